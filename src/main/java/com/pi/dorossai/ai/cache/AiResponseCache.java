@@ -0,0 +1,127 @@
+package com.pi.dorossai.ai.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.pi.dorossai.ai.config.AiCacheProperties;
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.PromptKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exact-match cache of AI completions for low-temperature calls. Bounded by
+ * the estimated size of the cached content; Caffeine's W-TinyLFU policy only
+ * admits a new entry over an existing one if it is likely to be used more
+ * often, so a burst of one-off prompts cannot flush the popular ones.
+ *
+ * <p>When the disk tier is enabled, memory misses fall through to the
+ * {@link DiskResponseStore} and every cached response is also written there.
+ *
+ * <p>Hits, misses and evictions are published as {@code cache.*} metrics
+ * tagged {@code cache=ai-completions}.
+ */
+@Component
+@Slf4j
+public class AiResponseCache {
+
+    private static final String CACHE_NAME = "ai-completions";
+    // Key hash, entry and node objects, roughly
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final AiCacheProperties properties;
+    private final Cache<PromptKey, CachedCompletion> cache;
+    private final DiskResponseStore diskStore;
+
+    public AiResponseCache(AiCacheProperties properties, MeterRegistry meterRegistry,
+                           ObjectProvider<DiskResponseStore> diskStore) {
+        this.properties = properties;
+        this.diskStore = diskStore.getIfAvailable();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxBytes())
+                .weigher((PromptKey key, CachedCompletion value) -> value.getWeight())
+                .expireAfter(new EntryExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public boolean isCacheable(AiFeature feature, double temperature) {
+        return properties.isEnabled()
+                && temperature <= properties.getMaxTemperature()
+                && !properties.ttlFor(feature).isZero();
+    }
+
+    /**
+     * @return the cached content, or {@code null} on a miss or if the call is
+     *         not cacheable
+     */
+    public String get(AiFeature feature, double temperature, PromptKey key) {
+        if (!isCacheable(feature, temperature)) {
+            return null;
+        }
+        CachedCompletion cached = cache.getIfPresent(key);
+        if (cached != null) {
+            log.debug("Serving {} response from cache", feature.getTag());
+            return cached.getContent();
+        }
+        return diskStore == null ? null : getFromDisk(feature, key);
+    }
+
+    public void put(AiFeature feature, double temperature, PromptKey key, String content) {
+        if (content != null && isCacheable(feature, temperature)) {
+            cache.put(key, new CachedCompletion(content, properties.ttlFor(feature).toNanos()));
+            if (diskStore != null) {
+                diskStore.put(feature, key, content);
+            }
+        }
+    }
+
+    private String getFromDisk(AiFeature feature, PromptKey key) {
+        SegmentedResponseLog.Entry stored = diskStore.get(key);
+        if (stored == null) {
+            return null;
+        }
+        // Promote to memory for the rest of the entry's original lifetime
+        long remainingMillis = stored.getExpiresAt() - System.currentTimeMillis();
+        if (remainingMillis > 0) {
+            cache.put(key, new CachedCompletion(stored.getValue(), TimeUnit.MILLISECONDS.toNanos(remainingMillis)));
+        }
+        log.debug("Serving {} response from disk cache", feature.getTag());
+        return stored.getValue();
+    }
+
+    @Value
+    private static class CachedCompletion {
+        String content;
+        long ttlNanos;
+
+        int getWeight() {
+            return ENTRY_OVERHEAD_BYTES + content.length() * Character.BYTES;
+        }
+    }
+
+    private static class EntryExpiry implements Expiry<PromptKey, CachedCompletion> {
+
+        @Override
+        public long expireAfterCreate(PromptKey key, CachedCompletion value, long currentTime) {
+            return value.getTtlNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(PromptKey key, CachedCompletion value, long currentTime, long currentDuration) {
+            return value.getTtlNanos();
+        }
+
+        @Override
+        public long expireAfterRead(PromptKey key, CachedCompletion value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.pi.dorossai.ai.cache;
+
+import com.pi.dorossai.ai.config.AiCacheProperties;
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.PromptKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persistent tier of the AI response cache, backed by a
+ * {@link SegmentedResponseLog} in {@code dorossai.ai.cache.disk.directory}.
+ * Entries written before a restart are served again afterwards, so a freshly
+ * deployed node does not start cold. Compaction runs on a background thread
+ * whenever a write leaves the log with reclaimable space.
+ */
+@Component
+@ConditionalOnProperty(name = "dorossai.ai.cache.disk.enabled", havingValue = "true")
+@Slf4j
+public class DiskResponseStore {
+
+    private final SegmentedResponseLog responseLog;
+    private final AiCacheProperties properties;
+    private final ExecutorService compactionExecutor;
+    private final AtomicBoolean compactionPending = new AtomicBoolean();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter writeFailures;
+
+    public DiskResponseStore(AiCacheProperties properties, MeterRegistry meterRegistry) throws IOException {
+        AiCacheProperties.Disk disk = properties.getDisk();
+        this.properties = properties;
+        this.responseLog = new SegmentedResponseLog(
+                Path.of(disk.getDirectory()),
+                Math.toIntExact(disk.getSegmentSize().toBytes()),
+                disk.getMaxSize().toBytes(),
+                disk.getInitialIndexCapacity(),
+                disk.getCompactionGarbageRatio());
+        this.compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ai-cache-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.hits = requestCounter(meterRegistry, "hit");
+        this.misses = requestCounter(meterRegistry, "miss");
+        this.writeFailures = Counter.builder("dorossai.ai.cache.disk.write-failures")
+                .description("AI responses that could not be written to the disk cache")
+                .register(meterRegistry);
+        Gauge.builder("dorossai.ai.cache.disk.entries", responseLog, SegmentedResponseLog::size)
+                .description("Entries indexed in the disk cache")
+                .register(meterRegistry);
+        Gauge.builder("dorossai.ai.cache.disk.size", responseLog, SegmentedResponseLog::sizeInBytes)
+                .description("Bytes allocated by disk cache segments")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("dorossai.ai.cache.disk.corrupt-records", responseLog, SegmentedResponseLog::getCorruptRecords)
+                .description("Records skipped at startup because their checksum did not match")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the stored entry, or {@code null} if absent or expired
+     */
+    public SegmentedResponseLog.Entry get(PromptKey key) {
+        SegmentedResponseLog.Entry entry = responseLog.get(storageKey(key), System.currentTimeMillis());
+        (entry != null ? hits : misses).increment();
+        return entry;
+    }
+
+    public void put(AiFeature feature, PromptKey key, String content) {
+        long expiresAt = System.currentTimeMillis() + properties.ttlFor(feature).toMillis();
+        try {
+            responseLog.put(storageKey(key), content, expiresAt);
+        } catch (IOException | RuntimeException e) {
+            // The disk tier is best effort; the response is still served and cached in memory
+            writeFailures.increment();
+            log.warn("Failed to write {} response to disk cache: {}", feature.getTag(), e.getMessage());
+            return;
+        }
+        if (responseLog.needsCompaction() && compactionPending.compareAndSet(false, true)) {
+            compactionExecutor.execute(this::compact);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        compactionExecutor.shutdown();
+        compactionExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        responseLog.close();
+    }
+
+    private void compact() {
+        try {
+            long start = System.nanoTime();
+            responseLog.compact(System.currentTimeMillis());
+            log.debug("Compacted disk cache in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            log.error("Disk cache compaction failed: {}", e.getMessage(), e);
+        } finally {
+            compactionPending.set(false);
+        }
+    }
+
+    private static String storageKey(PromptKey key) {
+        return key.getModel() + '|' + key.getTemperature() + '|' + key.getMessagesHash();
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("dorossai.ai.cache.disk.requests")
+                .description("Disk cache lookups after an in-memory miss")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
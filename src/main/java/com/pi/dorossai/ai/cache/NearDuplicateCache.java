@@ -0,0 +1,221 @@
+package com.pi.dorossai.ai.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.pi.dorossai.ai.config.AiCacheProperties;
+import com.pi.dorossai.ai.service.AiFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Cache of AI responses keyed by the similarity of the input text rather than
+ * its exact bytes, for features like summarization where resubmissions often
+ * differ only in whitespace, quotes or a trailing sentence.
+ *
+ * <p>Each input is reduced to a 64-bit {@link SimHash}. For lookup the
+ * fingerprint is split into {@value #BANDS} bands of {@value #BAND_BITS} bits
+ * (LSH banding): two fingerprints within Hamming distance 7 share at least one
+ * band, so only entries in the same band buckets are compared. A candidate is
+ * a hit if its similarity, {@code 1 - distance / 64}, reaches the feature's
+ * threshold and it was produced with the same request options ("variant",
+ * e.g. the output language). Since lookup cannot reach fingerprints further
+ * apart, thresholds below {@code 1 - 7 / 64} (0.890625) are rejected at startup.
+ *
+ * <p>Features without a configured threshold are not cached here.
+ */
+@Component
+@Slf4j
+public class NearDuplicateCache {
+
+    private static final int BANDS = 8;
+    private static final int BAND_BITS = SimHash.BITS / BANDS;
+    private static final long BAND_MASK = (1L << BAND_BITS) - 1;
+
+    private final AiCacheProperties properties;
+    private final Cache<Long, Fingerprinted> entries;
+    private final ConcurrentMap<Long, Set<Long>> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+
+    public NearDuplicateCache(AiCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(properties.getNearDuplicate().getMaxEntries())
+                .expireAfter(new FeatureExpiry())
+                .removalListener((Long id, Fingerprinted entry, RemovalCause cause) -> {
+                    if (id != null && entry != null) {
+                        unindex(id, entry);
+                    }
+                })
+                .build();
+        properties.getNearDuplicate().getThreshold().forEach((feature, threshold) -> {
+            if (maxDistance(threshold) >= BANDS) {
+                throw new IllegalStateException("Near-duplicate threshold " + threshold + " of " + feature.getTag()
+                        + " allows fingerprints " + maxDistance(threshold) + " bits apart, but lookup only finds those"
+                        + " at most " + (BANDS - 1) + " apart; use at least " + (1.0 - (BANDS - 1) / (double) SimHash.BITS));
+            }
+        });
+    }
+
+    public boolean isEnabled(AiFeature feature) {
+        return properties.isEnabled()
+                && properties.getNearDuplicate().isEnabled()
+                && properties.getNearDuplicate().getThreshold().containsKey(feature)
+                && !properties.ttlFor(feature).isZero();
+    }
+
+    /**
+     * @return the response cached for a sufficiently similar input with the
+     *         same variant, or {@code null}
+     */
+    public String get(AiFeature feature, String variant, String input) {
+        if (!isEnabled(feature)) {
+            return null;
+        }
+        List<String> words = SimHash.words(input);
+        if (words.size() < properties.getNearDuplicate().getMinWords()) {
+            return null;
+        }
+        long fingerprint = SimHash.fingerprint(words);
+        int maxDistance = maxDistance(properties.getNearDuplicate().getThreshold().get(feature));
+
+        Fingerprinted best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int band = 0; band < BANDS; band++) {
+            Set<Long> bucket = buckets.get(bucketKey(feature, variant, band, fingerprint));
+            if (bucket == null) {
+                continue;
+            }
+            for (Long id : bucket) {
+                Fingerprinted candidate = entries.getIfPresent(id);
+                if (candidate == null || candidate.getFeature() != feature
+                        || !Objects.equals(candidate.getVariant(), variant)) {
+                    continue;
+                }
+                int distance = SimHash.distance(fingerprint, candidate.getFingerprint());
+                if (distance <= maxDistance && distance < bestDistance) {
+                    best = candidate;
+                    bestDistance = distance;
+                }
+            }
+        }
+
+        requestCounter(feature, best != null ? "hit" : "miss").increment();
+        if (best == null) {
+            return null;
+        }
+        log.debug("Serving {} response cached for a near-duplicate input (distance {})", feature.getTag(), bestDistance);
+        return best.getContent();
+    }
+
+    public void put(AiFeature feature, String variant, String input, String content) {
+        if (content == null || !isEnabled(feature)) {
+            return;
+        }
+        List<String> words = SimHash.words(input);
+        if (words.size() < properties.getNearDuplicate().getMinWords()) {
+            return;
+        }
+        long id = ids.incrementAndGet();
+        Fingerprinted entry = new Fingerprinted(feature, variant, SimHash.fingerprint(words), content);
+        for (int band = 0; band < BANDS; band++) {
+            // Add inside compute, so a concurrent unindex cannot drop the bucket in between
+            buckets.compute(bucketKey(feature, variant, band, entry.getFingerprint()), (key, bucket) -> {
+                Set<Long> members = bucket != null ? bucket : ConcurrentHashMap.newKeySet();
+                members.add(id);
+                return members;
+            });
+        }
+        entries.put(id, entry);
+    }
+
+    /**
+     * Serves the call from a near-duplicate input if possible, otherwise runs
+     * it and caches the content it completes with if {@code reusable} accepts
+     * it. Answers cut off at the token limit or that do not parse must be
+     * refused, or they are served to every near-duplicate input for the whole TTL.
+     */
+    public CompletableFuture<String> getOrCall(AiFeature feature, String variant, String input,
+                                               Supplier<CompletableFuture<String>> call, Predicate<String> reusable) {
+        String similar = get(feature, variant, input);
+        if (similar != null) {
+            return CompletableFuture.completedFuture(similar);
+        }
+        return call.get().thenApply(content -> {
+            if (content != null && reusable.test(content)) {
+                put(feature, variant, input, content);
+            }
+            return content;
+        });
+    }
+
+    private void unindex(long id, Fingerprinted entry) {
+        for (int band = 0; band < BANDS; band++) {
+            long key = bucketKey(entry.getFeature(), entry.getVariant(), band, entry.getFingerprint());
+            buckets.computeIfPresent(key, (k, bucket) -> {
+                bucket.remove(id);
+                return bucket.isEmpty() ? null : bucket;
+            });
+        }
+    }
+
+    private static int maxDistance(double threshold) {
+        return (int) Math.floor((1.0 - threshold) * SimHash.BITS);
+    }
+
+    private static long bucketKey(AiFeature feature, String variant, int band, long fingerprint) {
+        long bandValue = (fingerprint >>> (band * BAND_BITS)) & BAND_MASK;
+        long key = ((long) feature.ordinal() << 56) ^ ((long) band << 48) ^ bandValue;
+        return SimHash.mix(key ^ SimHash.mix(Objects.hashCode(variant)));
+    }
+
+    private Counter requestCounter(AiFeature feature, String result) {
+        return Counter.builder("dorossai.ai.cache.near-duplicate.requests")
+                .description("Near-duplicate cache lookups by feature and result")
+                .tag("feature", feature.getTag())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Value
+    private static class Fingerprinted {
+        AiFeature feature;
+        String variant;
+        long fingerprint;
+        String content;
+    }
+
+    private class FeatureExpiry implements Expiry<Long, Fingerprinted> {
+
+        @Override
+        public long expireAfterCreate(Long key, Fingerprinted value, long currentTime) {
+            return properties.ttlFor(value.getFeature()).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Long key, Fingerprinted value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(Long key, Fingerprinted value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
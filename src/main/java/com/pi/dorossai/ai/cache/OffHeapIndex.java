@@ -0,0 +1,140 @@
+package com.pi.dorossai.ai.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Open-addressing hash map from a 64-bit key hash to a 64-bit record location,
+ * held in a direct buffer so a large index adds nothing to the Java heap or GC
+ * work. Linear probing with backward-shift deletion; grows by doubling once
+ * three quarters full. Not thread-safe.
+ */
+final class OffHeapIndex {
+
+    static final long ABSENT = -1L;
+
+    private static final int SLOT_BYTES = 16;
+    private static final long EMPTY = 0L;
+    private static final double MAX_LOAD = 0.75;
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int size;
+
+    OffHeapIndex(int initialCapacity) {
+        allocate(Integer.highestOneBit(Math.max(16, initialCapacity - 1)) << 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(long hash) {
+        long key = normalize(hash);
+        for (int slot = slotOf(key); ; slot = next(slot)) {
+            long current = keyAt(slot);
+            if (current == EMPTY) {
+                return ABSENT;
+            }
+            if (current == key) {
+                return valueAt(slot);
+            }
+        }
+    }
+
+    /**
+     * @return the previous location, or {@link #ABSENT}
+     */
+    long put(long hash, long location) {
+        if (size + 1 > capacity * MAX_LOAD) {
+            resize();
+        }
+        long key = normalize(hash);
+        for (int slot = slotOf(key); ; slot = next(slot)) {
+            long current = keyAt(slot);
+            if (current == EMPTY) {
+                write(slot, key, location);
+                size++;
+                return ABSENT;
+            }
+            if (current == key) {
+                long previous = valueAt(slot);
+                write(slot, key, location);
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * @return the removed location, or {@link #ABSENT}
+     */
+    long remove(long hash) {
+        long key = normalize(hash);
+        int slot = slotOf(key);
+        while (keyAt(slot) != key) {
+            if (keyAt(slot) == EMPTY) {
+                return ABSENT;
+            }
+            slot = next(slot);
+        }
+        long removed = valueAt(slot);
+        size--;
+
+        // Shift later entries of the probe run back, so lookups never stop at a hole
+        int hole = slot;
+        for (int probe = next(hole); keyAt(probe) != EMPTY; probe = next(probe)) {
+            int home = slotOf(keyAt(probe));
+            boolean movable = hole <= probe ? home <= hole || home > probe : home <= hole && home > probe;
+            if (movable) {
+                write(hole, keyAt(probe), valueAt(probe));
+                hole = probe;
+            }
+        }
+        write(hole, EMPTY, 0L);
+        return removed;
+    }
+
+    private void resize() {
+        ByteBuffer old = slots;
+        int oldCapacity = capacity;
+        allocate(capacity << 1);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long key = old.getLong(slot * SLOT_BYTES);
+            if (key != EMPTY) {
+                put(key, old.getLong(slot * SLOT_BYTES + 8));
+            }
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        size = 0;
+        // Direct buffers are zero-filled, i.e. every slot starts EMPTY
+        slots = ByteBuffer.allocateDirect(newCapacity * SLOT_BYTES);
+    }
+
+    private static long normalize(long hash) {
+        // Zero marks an empty slot
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    private int slotOf(long key) {
+        return (int) (key ^ (key >>> 32)) & (capacity - 1);
+    }
+
+    private int next(int slot) {
+        return (slot + 1) & (capacity - 1);
+    }
+
+    private long keyAt(int slot) {
+        return slots.getLong(slot * SLOT_BYTES);
+    }
+
+    private long valueAt(int slot) {
+        return slots.getLong(slot * SLOT_BYTES + 8);
+    }
+
+    private void write(int slot, long key, long value) {
+        slots.putLong(slot * SLOT_BYTES, key);
+        slots.putLong(slot * SLOT_BYTES + 8, value);
+    }
+}
@@ -0,0 +1,424 @@
+package com.pi.dorossai.ai.cache;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only key/value log stored in fixed-size, memory-mapped segment files,
+ * with an {@link OffHeapIndex} from key hash to the latest record of each key.
+ * The index is rebuilt by scanning the segments on open, so the content
+ * survives restarts.
+ *
+ * <p>Record layout (big-endian): CRC32C of the rest of the record (int), record
+ * length (int), expiry in epoch millis (long), key length (short), value length
+ * (int), key bytes, value bytes. Segment files are zero-filled when created, so
+ * a zero length marks the end of the written data. Records failing their
+ * checksum, e.g. a write torn by a crash, end the scan of their segment and
+ * are counted as corrupt.
+ *
+ * <p>Overwritten and expired records are garbage; {@link #compact(long)}
+ * rewrites the live records of mostly-garbage segments and drops the oldest
+ * segments once the log exceeds its size limit.
+ */
+@Slf4j
+public class SegmentedResponseLog implements Closeable {
+
+    private static final String SEGMENT_FORMAT = "segment-%08d.log";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{8})\\.log");
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 2 + 4;
+    private static final int CRC_BYTES = 4;
+    private static final int CLEAR_CHUNK_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final double compactionGarbageRatio;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final OffHeapIndex index;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Segment active;
+    private long corruptRecords;
+
+    /**
+     * Opens the log in {@code directory}, creating it if needed, and rebuilds
+     * the index from the existing segments.
+     */
+    public SegmentedResponseLog(Path directory, int segmentBytes, long maxBytes, int initialIndexCapacity,
+                                double compactionGarbageRatio) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.compactionGarbageRatio = compactionGarbageRatio;
+        this.index = new OffHeapIndex(initialIndexCapacity);
+
+        Files.createDirectories(directory);
+        long now = System.currentTimeMillis();
+        for (Path file : listSegmentFiles()) {
+            Segment segment = mapSegment(file, segmentId(file));
+            segments.put(segment.id, segment);
+            recover(segment, now);
+        }
+        active = segments.isEmpty() ? roll() : segments.lastEntry().getValue();
+        log.info("Opened AI response log in {} with {} entries in {} segments ({} corrupt records skipped)",
+                directory, index.size(), segments.size(), corruptRecords);
+    }
+
+    /**
+     * @return the stored value, or {@code null} if absent, expired or failing
+     *         its checksum
+     */
+    public Entry get(String key, long now) {
+        lock.readLock().lock();
+        try {
+            long location = index.get(hash(key));
+            if (location == OffHeapIndex.ABSENT) {
+                return null;
+            }
+            Segment segment = segments.get(segmentOf(location));
+            Record record = segment == null ? null : read(segment, offsetOf(location));
+            if (record == null || !record.key.equals(key) || record.expiresAt <= now) {
+                return null;
+            }
+            return new Entry(record.value, record.expiresAt);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return whether the value was stored; values larger than a segment are not
+     */
+    public boolean put(String key, String value, long expiresAt) throws IOException {
+        byte[] record = encode(key, value, expiresAt);
+        if (record.length > segmentBytes) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            append(key, record);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return whether {@link #compact(long)} would currently reclaim space
+     */
+    public boolean needsCompaction() {
+        lock.readLock().lock();
+        try {
+            return sizeInBytes() > maxBytes || segments.values().stream().anyMatch(this::isCompactable);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the oldest segments while the log is over its size limit, then
+     * rewrites the live, unexpired records of sealed segments whose garbage
+     * ratio exceeds the threshold and deletes those segments.
+     */
+    public void compact(long now) throws IOException {
+        lock.writeLock().lock();
+        try {
+            while (sizeInBytes() > maxBytes && segments.size() > 1) {
+                Segment oldest = segments.firstEntry().getValue();
+                for (Record live : liveRecords(oldest)) {
+                    index.remove(hash(live.key));
+                }
+                delete(oldest);
+            }
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                if (!isCompactable(segment)) {
+                    continue;
+                }
+                for (Record record : liveRecords(segment)) {
+                    if (record.expiresAt > now) {
+                        append(record.key, encode(record.key, record.value, record.expiresAt));
+                    } else {
+                        index.remove(hash(record.key));
+                    }
+                }
+                delete(segment);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long sizeInBytes() {
+        return (long) segments.size() * segmentBytes;
+    }
+
+    public long getCorruptRecords() {
+        return corruptRecords;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+            }
+            segments.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(String key, byte[] record) throws IOException {
+        if (active.writePosition + record.length > segmentBytes) {
+            active = roll();
+        }
+        int offset = active.writePosition;
+        active.buffer.put(offset, record);
+        active.writePosition += record.length;
+        active.liveBytes += record.length;
+        release(index.put(hash(key), location(active.id, offset)));
+    }
+
+    /**
+     * Marks the record at a replaced or removed location as garbage.
+     */
+    private void release(long location) {
+        if (location == OffHeapIndex.ABSENT) {
+            return;
+        }
+        Segment segment = segments.get(segmentOf(location));
+        if (segment != null) {
+            segment.liveBytes -= segment.buffer.getInt(offsetOf(location) + CRC_BYTES);
+        }
+    }
+
+    private boolean isCompactable(Segment segment) {
+        return segment != active && segment.writePosition > 0
+                && 1.0 - (double) segment.liveBytes / segment.writePosition >= compactionGarbageRatio;
+    }
+
+    private void recover(Segment segment, long now) {
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segmentBytes) {
+            int length = segment.buffer.getInt(offset + CRC_BYTES);
+            if (length == 0) {
+                break;
+            }
+            Record record = read(segment, offset);
+            if (record == null) {
+                corruptRecords++;
+                log.warn("Corrupt record at offset {} of {}, ignoring the rest of the segment", offset, segment.path);
+                // Clear the torn tail, so records appended here later are not followed by stale bytes
+                clear(segment, offset);
+                break;
+            }
+            // The newest record of a key decides, so an expired one hides the older records
+            if (record.expiresAt > now) {
+                segment.liveBytes += length;
+                release(index.put(hash(record.key), location(segment.id, offset)));
+            } else {
+                release(index.remove(hash(record.key)));
+            }
+            offset += length;
+        }
+        segment.writePosition = offset;
+    }
+
+    private void clear(Segment segment, int from) {
+        byte[] zeros = new byte[Math.min(CLEAR_CHUNK_BYTES, segmentBytes - from)];
+        for (int offset = from; offset < segmentBytes; offset += zeros.length) {
+            segment.buffer.put(offset, zeros, 0, Math.min(zeros.length, segmentBytes - offset));
+        }
+    }
+
+    /**
+     * @return records of the segment that the index still points to
+     */
+    private List<Record> liveRecords(Segment segment) {
+        List<Record> live = new ArrayList<>();
+        int offset = 0;
+        while (offset < segment.writePosition) {
+            Record record = read(segment, offset);
+            if (record == null) {
+                break;
+            }
+            if (index.get(hash(record.key)) == location(segment.id, offset)) {
+                live.add(record);
+            }
+            offset += segment.buffer.getInt(offset + CRC_BYTES);
+        }
+        return live;
+    }
+
+    private Record read(Segment segment, int offset) {
+        if (offset + HEADER_BYTES > segmentBytes) {
+            return null;
+        }
+        ByteBuffer buffer = segment.buffer;
+        int length = buffer.getInt(offset + CRC_BYTES);
+        if (length < HEADER_BYTES || offset + length > segmentBytes) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, CRC_BYTES, length - CRC_BYTES);
+        ByteBuffer record = ByteBuffer.wrap(bytes);
+        if ((int) crc.getValue() != record.getInt(0)) {
+            return null;
+        }
+        long expiresAt = record.getLong(8);
+        int keyLength = record.getShort(16);
+        int valueLength = record.getInt(18);
+        if (HEADER_BYTES + keyLength + valueLength != length) {
+            return null;
+        }
+        return new Record(
+                new String(bytes, HEADER_BYTES, keyLength, StandardCharsets.UTF_8),
+                new String(bytes, HEADER_BYTES + keyLength, valueLength, StandardCharsets.UTF_8),
+                expiresAt);
+    }
+
+    private static byte[] encode(String key, String value, long expiresAt) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Key too long: " + keyBytes.length + " bytes");
+        }
+        int length = HEADER_BYTES + keyBytes.length + valueBytes.length;
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(0)
+                .putInt(length)
+                .putLong(expiresAt)
+                .putShort((short) keyBytes.length)
+                .putInt(valueBytes.length)
+                .put(keyBytes)
+                .put(valueBytes);
+
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), CRC_BYTES, length - CRC_BYTES);
+        record.putInt(0, (int) crc.getValue());
+        return record.array();
+    }
+
+    private Segment roll() throws IOException {
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Segment segment = mapSegment(directory.resolve(String.format(SEGMENT_FORMAT, id)), id);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment mapSegment(Path file, int id) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            if (raf.length() != segmentBytes) {
+                raf.setLength(segmentBytes);
+            }
+            // The mapping stays valid after the file is closed
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            return new Segment(id, file, buffer);
+        }
+    }
+
+    private void delete(Segment segment) throws IOException {
+        segments.remove(segment.id);
+        // The mapping itself is released once the buffer is garbage collected
+        Files.deleteIfExists(segment.path);
+    }
+
+    private List<Path> listSegmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> SEGMENT_NAME.matcher(file.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static int segmentId(Path file) {
+        Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a segment file: " + file);
+        }
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    private static long location(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * 64-bit FNV-1a; collisions are harmless since records store the full key.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @Value
+    public static class Entry {
+        String value;
+        long expiresAt;
+    }
+
+    @Value
+    private static class Record {
+        String key;
+        String value;
+        long expiresAt;
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private long liveBytes;
+
+        private Segment(int id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.pi.dorossai.ai.cache;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 64-bit SimHash fingerprints of free text. Texts differing only in
+ * whitespace, case, punctuation, quote style or a few words get fingerprints
+ * a small Hamming distance apart.
+ */
+final class SimHash {
+
+    static final int BITS = 64;
+
+    private static final int SHINGLE_SIZE = 3;
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private SimHash() {
+    }
+
+    /**
+     * Lower-cased words of the text after Unicode compatibility normalization
+     * (ligatures, full-width forms). Any punctuation, smart quotes included,
+     * only separates words.
+     */
+    static List<String> words(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(normalized)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Fingerprint over overlapping word 3-grams, so word order matters but a
+     * local edit only changes the few shingles around it.
+     */
+    static long fingerprint(List<String> words) {
+        int[] weights = new int[BITS];
+        int shingles = Math.max(1, words.size() - SHINGLE_SIZE + 1);
+        for (int i = 0; i < shingles; i++) {
+            long hash = shingleHash(words, i, Math.min(words.size(), i + SHINGLE_SIZE));
+            for (int bit = 0; bit < BITS; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static long shingleHash(List<String> words, int from, int to) {
+        // FNV-1a over the shingle's characters with a word separator, then a 64-bit finalizer
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            String word = words.get(i);
+            for (int c = 0; c < word.length(); c++) {
+                hash ^= word.charAt(c);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= ' ';
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,46 @@
+package com.pi.dorossai.ai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of moderation micro-batching ({@code dorossai.ai.batching.*}).
+ * Short moderation requests arriving within {@code max-wait} of each other
+ * are sent upstream as a single prompt.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.batching")
+public class AiBatchingProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * How long the first request of a batch waits for others to join it.
+     */
+    private Duration maxWait = Duration.ofMillis(10);
+
+    /**
+     * Requests per upstream call; a full batch is sent without waiting.
+     */
+    private int maxBatchSize = 16;
+
+    /**
+     * Tokens of moderated text per upstream call, kept well below the
+     * moderation input budget to leave room for the instructions.
+     */
+    private int maxBatchTokens = 1200;
+
+    /**
+     * Longer texts are not batched and are moderated on their own.
+     */
+    private int maxItemTokens = 200;
+
+    /**
+     * Output tokens reserved per batched request for its verdict.
+     */
+    private int outputTokensPerItem = 80;
+}
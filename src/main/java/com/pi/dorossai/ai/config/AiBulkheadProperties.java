@@ -0,0 +1,55 @@
+package com.pi.dorossai.ai.config;
+
+import com.pi.dorossai.ai.service.AiFeature;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings of the per-feature bulkheads in front of the AI endpoint
+ * ({@code dorossai.ai.bulkhead.*}). Features without an entry in
+ * {@link #partitions} use {@link #defaultPartition}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.bulkhead")
+public class AiBulkheadProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Upstream calls shared by all partitions; must cover the sum of their
+     * reserved slots.
+     */
+    private int capacity = 100;
+
+    private Partition defaultPartition = new Partition();
+
+    private Map<AiFeature, Partition> partitions = new EnumMap<>(AiFeature.class);
+
+    public Partition partitionFor(AiFeature feature) {
+        return partitions.getOrDefault(feature, defaultPartition);
+    }
+
+    @Data
+    public static class Partition {
+
+        /**
+         * Slots only this feature may use; idle ones are lent to others.
+         */
+        private int reserved = 5;
+
+        /**
+         * Cap on the feature's concurrent calls, borrowed slots included.
+         */
+        private int maxConcurrent = 50;
+
+        private int maxQueue = 50;
+
+        private Duration maxWait = Duration.ofSeconds(10);
+    }
+}
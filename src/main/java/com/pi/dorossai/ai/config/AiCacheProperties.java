@@ -0,0 +1,102 @@
+package com.pi.dorossai.ai.config;
+
+import com.pi.dorossai.ai.service.AiFeature;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings of the AI response cache ({@code dorossai.ai.cache.*}).
+ * Only calls made at or below {@link #maxTemperature} are cached, since
+ * higher temperatures are expected to produce a different answer each time.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.cache")
+public class AiCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Upper bound on the estimated memory held by cached responses.
+     */
+    private long maxBytes = 64L * 1024 * 1024;
+
+    private double maxTemperature = 0.3;
+
+    /**
+     * Time to live of an entry, unless overridden for its feature.
+     */
+    private Duration ttl = Duration.ofHours(1);
+
+    /**
+     * Per-feature time to live, e.g. {@code feature-ttl.moderation=24h};
+     * a zero duration disables caching for that feature.
+     */
+    private Map<AiFeature, Duration> featureTtl = new EnumMap<>(AiFeature.class);
+
+    /**
+     * Persistent tier behind the in-memory cache.
+     */
+    private Disk disk = new Disk();
+
+    /**
+     * Similarity-keyed cache for features whose inputs are resubmitted with
+     * small edits.
+     */
+    private NearDuplicate nearDuplicate = new NearDuplicate();
+
+    public Duration ttlFor(AiFeature feature) {
+        return featureTtl.getOrDefault(feature, ttl);
+    }
+
+    @Data
+    public static class Disk {
+
+        private boolean enabled = false;
+
+        private String directory = "data/ai-cache";
+
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Oldest segments are dropped once the log grows beyond this size.
+         */
+        private DataSize maxSize = DataSize.ofGigabytes(1);
+
+        private int initialIndexCapacity = 65536;
+
+        /**
+         * Share of overwritten or expired bytes at which a segment is compacted.
+         */
+        private double compactionGarbageRatio = 0.5;
+    }
+
+    @Data
+    public static class NearDuplicate {
+
+        private boolean enabled = true;
+
+        private long maxEntries = 10000;
+
+        /**
+         * Shorter inputs are only served by the exact-match cache, since a few
+         * words give too coarse a fingerprint.
+         */
+        private int minWords = 30;
+
+        /**
+         * Minimum fingerprint similarity (0-1) per feature for reusing a
+         * response; features not listed are not cached by similarity. At
+         * least 0.890625, the loosest match the lookup can find.
+         */
+        private Map<AiFeature, Double> threshold = new EnumMap<>(Map.of(
+                AiFeature.SUMMARIZATION, 0.9,
+                AiFeature.KEY_POINTS, 0.9));
+    }
+}
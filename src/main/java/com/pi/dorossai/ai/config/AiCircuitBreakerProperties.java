@@ -0,0 +1,46 @@
+package com.pi.dorossai.ai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the circuit breaker in front of the AI endpoint
+ * ({@code dorossai.ai.circuit-breaker.*}). Rates are shares (0-1) of the
+ * last {@link #windowSize} calls.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.circuit-breaker")
+public class AiCircuitBreakerProperties {
+
+    private boolean enabled = true;
+
+    private int windowSize = 50;
+
+    /**
+     * Calls recorded before the rates are evaluated at all.
+     */
+    private int minimumCalls = 20;
+
+    private double failureRateThreshold = 0.5;
+
+    /**
+     * Calls taking longer than this count as slow, even if they succeed.
+     */
+    private Duration slowCallDuration = Duration.ofSeconds(30);
+
+    private double slowCallRateThreshold = 0.8;
+
+    /**
+     * How long calls are rejected before probing the endpoint again.
+     */
+    private Duration openDuration = Duration.ofSeconds(30);
+
+    /**
+     * Probe calls let through while half-open; all must succeed to close.
+     */
+    private int halfOpenProbes = 3;
+}
@@ -0,0 +1,36 @@
+package com.pi.dorossai.ai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.zip.Deflater;
+
+/**
+ * Settings of gzip on upstream AI calls ({@code dorossai.ai.compression.*}).
+ * Gzipped responses are always accepted; request bodies are only
+ * compressed when enabled, as not every endpoint accepts them.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.compression")
+public class AiCompressionProperties {
+
+    /**
+     * Whether large request bodies are sent with {@code Content-Encoding: gzip}.
+     */
+    private boolean requestEnabled = false;
+
+    /**
+     * Smaller request bodies are sent as they are; compressing them costs
+     * more time than it saves on the wire.
+     */
+    private DataSize minRequestSize = DataSize.ofKilobytes(16);
+
+    /**
+     * Deflate level from 1 (fastest) to 9 (smallest). Prompts are prose and
+     * compress well at the fastest level already.
+     */
+    private int level = Deflater.BEST_SPEED;
+}
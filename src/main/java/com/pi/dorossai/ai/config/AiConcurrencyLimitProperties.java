@@ -0,0 +1,46 @@
+package com.pi.dorossai.ai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the adaptive limit on concurrent upstream AI calls
+ * ({@code dorossai.ai.concurrency-limit.*}).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.concurrency-limit")
+public class AiConcurrencyLimitProperties {
+
+    private boolean enabled = true;
+
+    private int initialLimit = 20;
+
+    private int minLimit = 2;
+
+    /**
+     * Should not exceed the connection pool's max-per-route.
+     */
+    private int maxLimit = 100;
+
+    /**
+     * Factor the limit is multiplied by when the endpoint shows congestion.
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * A call slower than this multiple of the average latency of its
+     * feature counts as a congestion signal.
+     */
+    private double latencyTolerance = 2.0;
+
+    /**
+     * Callers allowed to wait for a slot; further ones are rejected at once.
+     */
+    private int maxQueue = 100;
+
+    private Duration maxWait = Duration.ofSeconds(5);
+}
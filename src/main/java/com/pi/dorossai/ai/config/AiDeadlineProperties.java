@@ -0,0 +1,44 @@
+package com.pi.dorossai.ai.config;
+
+import com.pi.dorossai.ai.service.AiFeature;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * End-to-end deadlines of AI requests ({@code dorossai.ai.deadline.*}),
+ * covering every attempt, backoff and queueing of an API call.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.deadline")
+public class AiDeadlineProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Request header with the client's own timeout, in milliseconds or as a
+     * duration such as {@code 30s}; it can shorten the endpoint's deadline,
+     * not extend it.
+     */
+    private String header = "X-Request-Timeout";
+
+    private Duration defaultTimeout = Duration.ofSeconds(60);
+
+    /**
+     * Per-feature deadline, e.g. {@code features.quiz=120s}.
+     */
+    private Map<AiFeature, Duration> features = new EnumMap<>(Map.of(
+            AiFeature.MODERATION, Duration.ofSeconds(20),
+            AiFeature.QUIZ, Duration.ofSeconds(120),
+            AiFeature.FLASHCARDS, Duration.ofSeconds(120),
+            AiFeature.MIND_MAP, Duration.ofSeconds(120)));
+
+    public Duration timeoutFor(AiFeature feature) {
+        return feature != null ? features.getOrDefault(feature, defaultTimeout) : defaultTimeout;
+    }
+}
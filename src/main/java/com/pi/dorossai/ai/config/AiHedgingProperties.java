@@ -0,0 +1,62 @@
+package com.pi.dorossai.ai.config;
+
+import com.pi.dorossai.ai.service.AiFeature;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Settings of hedged upstream AI calls ({@code dorossai.ai.hedging.*}).
+ * A hedge is a second, identical request sent when the first has not
+ * answered within the feature's usual latency.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.hedging")
+public class AiHedgingProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Features whose calls are hedged; empty means all of them.
+     */
+    private Set<AiFeature> features = EnumSet.noneOf(AiFeature.class);
+
+    /**
+     * Latency percentile of recent calls after which the hedge is sent.
+     */
+    private double percentile = 0.9;
+
+    /**
+     * Lower bound of the hedge delay, whatever the tracked percentile.
+     */
+    private Duration minDelay = Duration.ofMillis(200);
+
+    /**
+     * Calls of a feature are not hedged until this many latencies were recorded.
+     */
+    private int minSamples = 20;
+
+    /**
+     * Number of most recent latencies per feature the percentile is taken from.
+     */
+    private int window = 256;
+
+    /**
+     * Extra upstream requests allowed, as a share of all hedgeable calls.
+     */
+    private double budgetRatio = 0.05;
+
+    /**
+     * Hedges that may be sent back to back once the budget has been saved up.
+     */
+    private int maxBurst = 10;
+
+    public boolean isEnabled(AiFeature feature) {
+        return enabled && (features.isEmpty() || features.contains(feature));
+    }
+}
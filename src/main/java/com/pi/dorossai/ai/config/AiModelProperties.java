@@ -0,0 +1,52 @@
+package com.pi.dorossai.ai.config;
+
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiModelTier;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Model tiers and the rules choosing one per call ({@code dorossai.ai.models.*}).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.models")
+public class AiModelProperties {
+
+    /**
+     * If disabled, every call uses the large tier.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Model name of each tier, e.g. {@code tiers.small=gpt-4o-mini}.
+     */
+    private Map<AiModelTier, String> tiers = new EnumMap<>(Map.of(
+            AiModelTier.SMALL, "gpt-4o-mini",
+            AiModelTier.LARGE, "gpt-4o"));
+
+    /**
+     * Longest prompt, in characters, a feature sends to the small tier,
+     * e.g. {@code small-max-chars.moderation=4000}. Features not listed
+     * always use the large tier.
+     */
+    private Map<AiFeature, Integer> smallMaxChars = new EnumMap<>(Map.of(
+            AiFeature.MODERATION, 8000,
+            AiFeature.FLASHCARDS, 2000,
+            AiFeature.QUIZ, 1500,
+            AiFeature.KEY_POINTS, 4000));
+
+    /**
+     * Whether a small-tier answer of a JSON feature that does not parse is
+     * requested again from the large tier.
+     */
+    private boolean escalateOnInvalidJson = true;
+
+    public String modelFor(AiModelTier tier) {
+        return tiers.getOrDefault(tier, tiers.get(AiModelTier.LARGE));
+    }
+}
@@ -0,0 +1,53 @@
+package com.pi.dorossai.ai.config;
+
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiPriority;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Priority classes of AI calls ({@code dorossai.ai.priority.*}), used when
+ * callers queue for upstream capacity.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.priority")
+public class AiPriorityProperties {
+
+    private boolean enabled = true;
+
+    private AiPriority defaultPriority = AiPriority.STANDARD;
+
+    /**
+     * Priority of each feature's endpoints, e.g. {@code features.quiz=bulk}.
+     */
+    private Map<AiFeature, AiPriority> features = new EnumMap<>(Map.of(
+            AiFeature.MODERATION, AiPriority.INTERACTIVE,
+            AiFeature.DOCUMENT_QA, AiPriority.INTERACTIVE,
+            AiFeature.QUIZ, AiPriority.BULK,
+            AiFeature.FLASHCARDS, AiPriority.BULK,
+            AiFeature.MIND_MAP, AiPriority.BULK));
+
+    /**
+     * Waiting this long raises a queued call by one class, so bulk calls are
+     * not starved under sustained interactive load.
+     */
+    private Duration agingInterval = Duration.ofSeconds(2);
+
+    /**
+     * Request header batch clients can use to lower their priority.
+     */
+    private String header = "X-Request-Priority";
+
+    public AiPriority priorityFor(AiFeature feature) {
+        if (!enabled) {
+            return AiPriority.STANDARD;
+        }
+        return feature != null ? features.getOrDefault(feature, defaultPriority) : defaultPriority;
+    }
+}
@@ -0,0 +1,43 @@
+package com.pi.dorossai.ai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the retry policy for upstream AI calls
+ * ({@code dorossai.ai.retry.*}).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.retry")
+public class AiRetryProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Attempts per call, the first one included.
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * Smallest delay before a retry; later delays grow from the previous one
+     * with random jitter.
+     */
+    private Duration baseDelay = Duration.ofMillis(500);
+
+    private Duration maxDelay = Duration.ofSeconds(10);
+
+    /**
+     * Retries earned per successful call; retries stop when the budget is
+     * spent, so they stay at most this share of successful traffic.
+     */
+    private double budgetRatio = 0.1;
+
+    /**
+     * Retries that can be saved up, and the budget available at startup.
+     */
+    private int budgetMaxTokens = 10;
+}
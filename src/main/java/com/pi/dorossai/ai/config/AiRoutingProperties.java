@@ -0,0 +1,95 @@
+package com.pi.dorossai.ai.config;
+
+import com.pi.dorossai.ai.service.AiModelTier;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * OpenAI-compatible chat completion providers and how calls are routed
+ * between them ({@code dorossai.ai.routing.*}).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.routing")
+public class AiRoutingProperties {
+
+    public enum Strategy {
+        /**
+         * Prefer the provider with the lowest expected latency, accounting
+         * for its recent error rate.
+         */
+        LATENCY,
+        /**
+         * Split calls between healthy providers by their {@code weight}.
+         */
+        WEIGHTED
+    }
+
+    private Strategy strategy = Strategy.LATENCY;
+
+    /**
+     * Weight of the newest sample in the latency and error rate averages.
+     */
+    private double smoothing = 0.2;
+
+    /**
+     * Error rate at which a provider is only used once the others failed.
+     */
+    private double errorRateThreshold = 0.5;
+
+    /**
+     * Calls a provider must have answered or failed before its error rate
+     * can eject it.
+     */
+    private int minCalls = 5;
+
+    /**
+     * How long a provider stays at the back of the line after crossing the
+     * error rate threshold.
+     */
+    private Duration ejectionDuration = Duration.ofSeconds(30);
+
+    /**
+     * Share of latency-routed calls sent to another healthy provider, so
+     * their latency averages stay current.
+     */
+    private double explorationRatio = 0.05;
+
+    /**
+     * Providers by name, e.g. {@code providers.openai.url=...}. Without any,
+     * every call goes to the GitHub Models endpoint.
+     */
+    private Map<String, Provider> providers = new LinkedHashMap<>();
+
+    @Data
+    public static class Provider {
+
+        private boolean enabled = true;
+
+        /**
+         * Chat completions URL; may be omitted for {@code github} and
+         * {@code openai}.
+         */
+        private String url;
+
+        /**
+         * Bearer token; defaults to {@code dorossai.ai.github.api-key} or
+         * {@code dorossai.ai.openai.api-key} for those two providers.
+         */
+        private String apiKey;
+
+        /**
+         * Model name to request per tier, e.g. {@code models.small=...}, if
+         * the provider calls it differently than {@code dorossai.ai.models.tiers}.
+         */
+        private Map<AiModelTier, String> models = new EnumMap<>(AiModelTier.class);
+
+        private int weight = 1;
+    }
+}
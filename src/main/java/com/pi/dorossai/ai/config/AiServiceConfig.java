@@ -1,38 +1,184 @@
 package com.pi.dorossai.ai.config;
 
+import com.pi.dorossai.ai.service.AiRequestContext;
+import com.pi.dorossai.config.GzipCompressionInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class AiServiceConfig {
-    
+
+    private static final String AI_POOL_NAME = "ai";
+
     @Value("${dorossai.ai.openai.api-key}")
     private String openaiApiKey;
-    
+
     @Value("${dorossai.ai.github.api-key}")
     private String githubApiKey;
-      @Value("${dorossai.ai.timeout.connection:10000}")
+
+    @Value("${dorossai.ai.timeout.connection:10000}")
     private int connectionTimeout;
-    
+
     @Value("${dorossai.ai.timeout.read:60000}")
     private int readTimeout;
-    
+
+    @Value("${dorossai.ai.pool.max-total:200}")
+    private int poolMaxTotal;
+
+    @Value("${dorossai.ai.pool.max-per-route:100}")
+    private int poolMaxPerRoute;
+
+    @Value("${dorossai.ai.pool.lease-timeout:5000}")
+    private int poolLeaseTimeout;
+
+    @Value("${dorossai.ai.pool.idle-eviction:30000}")
+    private long poolIdleEviction;
+
+    @Value("${dorossai.ai.pool.connection-ttl:300000}")
+    private long poolConnectionTtl;
+
+    @Value("${dorossai.ai.executor.pool-size:200}")
+    private int executorPoolSize;
+
+    @Value("${dorossai.ai.executor.queue-capacity:1000}")
+    private int executorQueueCapacity;
+
     public String getOpenaiApiKey() {
         return openaiApiKey;
     }
-    
+
     public String getGithubApiKey() {
         return githubApiKey;
     }
-    
+
+    /**
+     * Keep-alive connection pool shared by every call to the AI endpoint, so
+     * consecutive requests reuse an established TLS session instead of
+     * handshaking again.
+     */
+    @Bean(name = "aiConnectionManager", destroyMethod = "close")
+    @ConditionalOnProperty(name = "dorossai.ai.transport", havingValue = "http1", matchIfMissing = true)
+    public InstrumentedConnectionManager aiConnectionManager(MeterRegistry meterRegistry) {
+        InstrumentedConnectionManager connectionManager = new InstrumentedConnectionManager(meterRegistry, AI_POOL_NAME);
+        connectionManager.setMaxTotal(poolMaxTotal);
+        connectionManager.setDefaultMaxPerRoute(poolMaxPerRoute);
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectionTimeout))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeout))
+                .setTimeToLive(TimeValue.ofMilliseconds(poolConnectionTtl))
+                .build());
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, AI_POOL_NAME, Tags.empty())
+                .bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean(name = "aiHttpClient", destroyMethod = "close")
+    @ConditionalOnProperty(name = "dorossai.ai.transport", havingValue = "http1", matchIfMissing = true)
+    public CloseableHttpClient aiHttpClient(InstrumentedConnectionManager aiConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(aiConnectionManager)
+                .setDefaultRequestConfig(defaultRequestConfig())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(poolIdleEviction))
+                .build();
+    }
+
+    @Bean(name = "aiRestTemplate")
+    @ConditionalOnProperty(name = "dorossai.ai.transport", havingValue = "http1", matchIfMissing = true)
+    public RestTemplate aiRestTemplate(CloseableHttpClient aiHttpClient, AiCompressionProperties compression) {
+        RestTemplate restTemplate = new RestTemplate(new CancellableClientHttpRequestFactory(aiHttpClient, defaultRequestConfig()));
+        restTemplate.getInterceptors().add(compressionInterceptor(compression));
+        return restTemplate;
+    }
+
+    /**
+     * HTTP/2 transport, active with dorossai.ai.transport=http2. Concurrent
+     * calls to an endpoint share one multiplexed connection, so the pool
+     * settings above do not apply.
+     */
+    @Bean(name = "aiHttp2Client")
+    @ConditionalOnProperty(name = "dorossai.ai.transport", havingValue = "http2")
+    public HttpClient aiHttp2Client() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectionTimeout))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
     @Bean(name = "aiRestTemplate")
-    public RestTemplate aiRestTemplate() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(connectionTimeout);
-        factory.setReadTimeout(readTimeout);
-        return new RestTemplate(factory);
+    @ConditionalOnProperty(name = "dorossai.ai.transport", havingValue = "http2")
+    public RestTemplate aiHttp2RestTemplate(HttpClient aiHttp2Client, MeterRegistry meterRegistry,
+                                            AiCompressionProperties compression) {
+        RestTemplate restTemplate = new RestTemplate(
+                new Http2ClientHttpRequestFactory(aiHttp2Client, Duration.ofMillis(readTimeout), meterRegistry));
+        restTemplate.getInterceptors().add(compressionInterceptor(compression));
+        return restTemplate;
+    }
+
+    private static GzipCompressionInterceptor compressionInterceptor(AiCompressionProperties compression) {
+        return new GzipCompressionInterceptor(compression.isRequestEnabled(),
+                compression.getMinRequestSize().toBytes(), compression.getLevel());
+    }
+
+    private RequestConfig defaultRequestConfig() {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolLeaseTimeout))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeout))
+                .build();
+    }
+
+    /**
+     * Executor running upstream AI calls for the async endpoints, so Tomcat
+     * request threads are released while a generation is in flight. Tasks
+     * inherit the submitting request's {@link AiRequestContext}.
+     */
+    @Bean(name = "aiTaskExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor aiTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("ai-call-");
+        executor.setCorePoolSize(executorPoolSize);
+        executor.setMaxPoolSize(executorPoolSize);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setQueueCapacity(executorQueueCapacity);
+        executor.setTaskDecorator(AiRequestContext::propagate);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Virtual-thread flavour of the AI executor, active when running on Java 21
+     * with spring.threads.virtual.enabled=true. Each upstream call gets its own
+     * virtual thread, so no pool sizing applies.
+     */
+    @Bean(name = "aiTaskExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskExecutor aiVirtualTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ai-call-");
+        executor.setVirtualThreads(true);
+        executor.setTaskDecorator(AiRequestContext::propagate);
+        return executor;
     }
 }
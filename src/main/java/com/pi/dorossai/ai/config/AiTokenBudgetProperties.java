@@ -0,0 +1,96 @@
+package com.pi.dorossai.ai.config;
+
+import com.knuddels.jtokkit.api.EncodingType;
+import com.pi.dorossai.ai.service.AiFeature;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Token budgets of AI calls ({@code dorossai.ai.tokens.*}), counted locally
+ * before a prompt is sent.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dorossai.ai.tokens")
+public class AiTokenBudgetProperties {
+
+    public enum Overflow {
+        /**
+         * Fail the request with a message saying how far it is over budget.
+         */
+        REJECT,
+        /**
+         * Cut the embedded text to what fits.
+         */
+        TRUNCATE,
+        /**
+         * Process the embedded text in parts that each fit; only supported
+         * by summarization, other features truncate instead.
+         */
+        CHUNK
+    }
+
+    private boolean enabled = true;
+
+    /**
+     * BPE encoding of the target model family; gpt-4o models use o200k_base.
+     */
+    private EncodingType encoding = EncodingType.O200K_BASE;
+
+    /**
+     * Most parts a text is split into at once by the {@code chunk} overflow;
+     * longer texts are rejected rather than fanned out further.
+     */
+    private int maxChunks = 16;
+
+    /**
+     * Most times the summaries of the parts may be split and condensed again
+     * before the text is rejected.
+     */
+    private int maxChunkRounds = 2;
+
+    private Budget defaultBudget = new Budget(8000, 2000, Overflow.REJECT);
+
+    /**
+     * Per-feature budgets, e.g. {@code features.summarization.max-input-tokens=16000}.
+     * Writing answers with the whole text rewritten, so its input budget must
+     * stay below what its output budget can hold, or long rewrites are cut off.
+     */
+    private Map<AiFeature, Budget> features = new EnumMap<>(Map.of(
+            AiFeature.SUMMARIZATION, new Budget(16000, 1500, Overflow.CHUNK),
+            AiFeature.KEY_POINTS, new Budget(16000, 1000, Overflow.TRUNCATE),
+            AiFeature.DOCUMENT_QA, new Budget(16000, 1000, Overflow.TRUNCATE),
+            AiFeature.MODERATION, new Budget(2000, 1500, Overflow.REJECT),
+            AiFeature.QUIZ, new Budget(8000, 4500, Overflow.REJECT),
+            AiFeature.FLASHCARDS, new Budget(8000, 2500, Overflow.REJECT),
+            AiFeature.WRITING, new Budget(2000, 3000, Overflow.REJECT),
+            AiFeature.CODE_EXPLANATION, new Budget(6000, 3000, Overflow.REJECT)));
+
+    public Budget budgetFor(AiFeature feature) {
+        return feature != null ? features.getOrDefault(feature, defaultBudget) : defaultBudget;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Budget {
+
+        /**
+         * Largest prompt, all messages included.
+         */
+        private int maxInputTokens = 8000;
+
+        /**
+         * Sent as {@code max_tokens}; callers may ask for less.
+         */
+        private int maxOutputTokens = 2000;
+
+        private Overflow overflow = Overflow.REJECT;
+    }
+}
@@ -0,0 +1,61 @@
+package com.pi.dorossai.ai.config;
+
+import com.pi.dorossai.ai.service.AiCallHandle;
+import com.pi.dorossai.ai.service.AiRequestContext;
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request factory that attaches every request to the {@link AiCallHandle} of
+ * the calling thread and to the cancellation of its {@link AiRequestContext},
+ * so a hedged or abandoned call can abort its request. Under a request
+ * deadline, the pool lease and response timeouts shrink to the time left.
+ */
+class CancellableClientHttpRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+    private final RequestConfig defaults;
+
+    CancellableClientHttpRequestFactory(HttpClient httpClient, RequestConfig defaults) {
+        super(httpClient);
+        this.defaults = defaults;
+    }
+
+    @Override
+    protected ClassicHttpRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+        ClassicHttpRequest request = super.createHttpUriRequest(httpMethod, uri);
+        AiRequestContext context = AiRequestContext.current();
+        long remaining = context.remainingNanos();
+        if (remaining != Long.MAX_VALUE && request instanceof HttpUriRequestBase configurable) {
+            long remainingMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining));
+            configurable.setConfig(RequestConfig.copy(defaults)
+                    .setConnectionRequestTimeout(shorter(defaults.getConnectionRequestTimeout(), remainingMillis))
+                    .setResponseTimeout(shorter(defaults.getResponseTimeout(), remainingMillis))
+                    .build());
+        }
+        if (request instanceof Cancellable cancellable) {
+            AiCallHandle handle = AiCallHandle.current();
+            if (handle != null) {
+                handle.attach(cancellable);
+            }
+            if (context.getCancellation() != null) {
+                context.getCancellation().attach(cancellable);
+            }
+        }
+        return request;
+    }
+
+    private static Timeout shorter(Timeout timeout, long millis) {
+        return timeout == null || timeout.isDisabled() || timeout.toMilliseconds() > millis
+                ? Timeout.ofMilliseconds(millis)
+                : timeout;
+    }
+}
@@ -0,0 +1,376 @@
+package com.pi.dorossai.ai.config;
+
+import com.pi.dorossai.ai.service.AiCallHandle;
+import com.pi.dorossai.ai.service.AiRequestContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Request factory on the JDK {@link HttpClient}, which multiplexes concurrent
+ * requests to an origin as HTTP/2 streams over a single connection instead of
+ * holding one socket per request. Origins that do not negotiate HTTP/2 are
+ * served over HTTP/1.1 by the same client.
+ *
+ * <p>Like {@link CancellableClientHttpRequestFactory}, every exchange is
+ * attached to the calling thread's {@link AiCallHandle} and to the
+ * cancellation of its {@link AiRequestContext}, and the response timeout
+ * shrinks to the request's remaining deadline. Response bodies are read as
+ * they arrive, so event streams are passed on token by token. The JDK
+ * client's request timeout only covers the wait for the headers, so each
+ * read of the body is timed separately: one that takes longer than the
+ * response timeout or the remaining deadline cancels the exchange and fails
+ * with {@link SocketTimeoutException}, like a socket read timeout of the
+ * Apache client.
+ *
+ * <p>{@code dorossai.ai.http2.streams{host}} counts the exchanges in flight
+ * per origin, whatever the protocol. It is the number of open streams only
+ * where {@code dorossai.ai.http2.responses{version}}, which shows the protocol
+ * the endpoints actually negotiated, reports {@code HTTP_2}; an origin that
+ * fell back to HTTP/1.1 holds one connection per exchange instead.
+ */
+class Http2ClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+    /**
+     * Headers the JDK client sets itself and refuses from callers.
+     */
+    private static final Set<String> RESTRICTED_HEADERS = caseInsensitive(
+            "connection", "content-length", "expect", "host", "upgrade");
+
+    private static final ScheduledThreadPoolExecutor READ_TIMEOUTS = readTimeouts();
+
+    private final HttpClient httpClient;
+    private final Duration responseTimeout;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, AtomicInteger> streams = new ConcurrentHashMap<>();
+
+    Http2ClientHttpRequestFactory(HttpClient httpClient, Duration responseTimeout, MeterRegistry meterRegistry) {
+        this.httpClient = httpClient;
+        this.responseTimeout = responseTimeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        return new Http2ClientHttpRequest(uri, httpMethod);
+    }
+
+    private Duration timeoutFor(AiRequestContext context) {
+        long remaining = context.remainingNanos();
+        if (remaining == Long.MAX_VALUE || remaining >= responseTimeout.toNanos()) {
+            return responseTimeout;
+        }
+        return Duration.ofMillis(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+    }
+
+    private AtomicInteger streamsFor(URI uri) {
+        String host = uri.getPort() != -1 ? uri.getHost() + ":" + uri.getPort() : uri.getHost();
+        return streams.computeIfAbsent(host, key -> {
+            AtomicInteger count = new AtomicInteger();
+            Gauge.builder("dorossai.ai.http2.streams", count, AtomicInteger::get)
+                    .description("AI requests in flight per origin, whatever the negotiated protocol")
+                    .tag("host", key)
+                    .register(meterRegistry);
+            return count;
+        });
+    }
+
+    private static ScheduledThreadPoolExecutor readTimeouts() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "ai-http2-read-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Nearly every read finishes in time; do not keep its timer queued until it would have fired
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private static Set<String> caseInsensitive(String... names) {
+        Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        set.addAll(List.of(names));
+        return set;
+    }
+
+    private class Http2ClientHttpRequest extends AbstractClientHttpRequest {
+
+        private final URI uri;
+        private final HttpMethod method;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+        Http2ClientHttpRequest(URI uri, HttpMethod method) {
+            this.uri = uri;
+            this.method = method;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) {
+            return body;
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+            AiRequestContext context = AiRequestContext.current();
+            HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                    .timeout(timeoutFor(context))
+                    .method(method.name(), body.size() > 0
+                            ? HttpRequest.BodyPublishers.ofByteArray(body.toByteArray())
+                            : HttpRequest.BodyPublishers.noBody());
+            headers.forEach((name, values) -> {
+                if (!RESTRICTED_HEADERS.contains(name)) {
+                    values.forEach(value -> builder.header(name, value));
+                }
+            });
+
+            AtomicInteger inFlight = streamsFor(uri);
+            inFlight.incrementAndGet();
+            Exchange exchange = new Exchange(httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofInputStream()));
+            AiCallHandle handle = AiCallHandle.current();
+            if (handle != null) {
+                handle.attach(exchange);
+            }
+            if (context.getCancellation() != null) {
+                context.getCancellation().attach(exchange);
+            }
+
+            try {
+                HttpResponse<InputStream> response = exchange.await();
+                Counter.builder("dorossai.ai.http2.responses")
+                        .description("AI responses by the HTTP version negotiated with the endpoint")
+                        .tag("version", response.version().name())
+                        .register(meterRegistry)
+                        .increment();
+                return new Http2ClientHttpResponse(response, new TimedBody(response.body(), context, exchange), inFlight);
+            } catch (IOException | RuntimeException e) {
+                inFlight.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * An exchange in progress: cancelling it aborts the request before the
+     * response arrives, or closes the response body while it is being read.
+     */
+    private static class Exchange implements Cancellable {
+
+        private final CompletableFuture<HttpResponse<InputStream>> future;
+        private volatile InputStream body;
+        private volatile boolean cancelled;
+
+        Exchange(CompletableFuture<HttpResponse<InputStream>> future) {
+            this.future = future;
+        }
+
+        HttpResponse<InputStream> await() throws IOException {
+            try {
+                HttpResponse<InputStream> response = future.get();
+                body = response.body();
+                return response;
+            } catch (CancellationException e) {
+                throw new IOException("Request aborted", e);
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the AI response");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) {
+                    throw io;
+                }
+                if (cause instanceof UncheckedIOException unchecked) {
+                    throw unchecked.getCause();
+                }
+                throw new IOException(cause != null ? cause.getMessage() : e.getMessage(), cause);
+            }
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean cancel() {
+            cancelled = true;
+            boolean aborted = future.cancel(true);
+            InputStream current = body;
+            if (current != null) {
+                try {
+                    current.close();
+                    return true;
+                } catch (IOException e) {
+                    return aborted;
+                }
+            }
+            return aborted;
+        }
+    }
+
+    /**
+     * Response body whose reads each end after the response timeout, or the
+     * request's remaining deadline if that is shorter. A body that ends
+     * because its exchange was cancelled fails rather than looking complete.
+     */
+    private class TimedBody extends FilterInputStream {
+
+        private final AiRequestContext context;
+        private final Exchange exchange;
+        private volatile boolean timedOut;
+
+        TimedBody(InputStream body, AiRequestContext context, Exchange exchange) {
+            super(body);
+            this.context = context;
+            this.exchange = exchange;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ScheduledFuture<?> timer = startTimer();
+            try {
+                return checked(super.read());
+            } catch (IOException e) {
+                throw translated(e);
+            } finally {
+                timer.cancel(false);
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            ScheduledFuture<?> timer = startTimer();
+            try {
+                return checked(super.read(buffer, offset, length));
+            } catch (IOException e) {
+                throw translated(e);
+            } finally {
+                timer.cancel(false);
+            }
+        }
+
+        private ScheduledFuture<?> startTimer() {
+            return READ_TIMEOUTS.schedule(() -> {
+                timedOut = true;
+                exchange.cancel();
+            }, timeoutFor(context).toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        private int checked(int read) throws IOException {
+            if (timedOut || read == -1 && exchange.isCancelled()) {
+                throw translated(null);
+            }
+            return read;
+        }
+
+        private IOException translated(IOException e) {
+            if (timedOut) {
+                SocketTimeoutException timeout = new SocketTimeoutException("Read timed out");
+                timeout.initCause(e);
+                return timeout;
+            }
+            if (exchange.isCancelled()) {
+                return new IOException("Request aborted", e);
+            }
+            return e;
+        }
+    }
+
+    private static class Http2ClientHttpResponse implements ClientHttpResponse {
+
+        private final HttpResponse<InputStream> response;
+        private final InputStream body;
+        private final AtomicInteger inFlight;
+        private final HttpHeaders headers = new HttpHeaders();
+        private boolean closed;
+
+        Http2ClientHttpResponse(HttpResponse<InputStream> response, InputStream body, AtomicInteger inFlight) {
+            this.response = response;
+            this.body = body;
+            this.inFlight = inFlight;
+            for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+                // Pseudo-headers such as :status are not HTTP/1.1 headers
+                if (!header.getKey().startsWith(":")) {
+                    headers.addAll(header.getKey(), header.getValue());
+                }
+            }
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatusCode.valueOf(response.statusCode());
+        }
+
+        @Override
+        public String getStatusText() {
+            return "";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            inFlight.decrementAndGet();
+            try {
+                response.body().close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+}
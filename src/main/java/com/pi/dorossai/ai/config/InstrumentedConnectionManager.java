@@ -0,0 +1,63 @@
+package com.pi.dorossai.ai.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.util.Timeout;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pooling connection manager for the AI client that records how long callers
+ * wait to lease a connection from the pool.
+ * Pool occupancy itself is exported by Micrometer's connection manager binder.
+ */
+public class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+    private final Timer leaseAcquired;
+    private final Timer leaseTimedOut;
+
+    public InstrumentedConnectionManager(MeterRegistry meterRegistry, String poolName) {
+        super();
+        this.leaseAcquired = leaseTimer(meterRegistry, poolName, "acquired");
+        this.leaseTimedOut = leaseTimer(meterRegistry, poolName, "timeout");
+    }
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest delegate = super.lease(id, route, requestTimeout, state);
+        long start = System.nanoTime();
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                try {
+                    ConnectionEndpoint endpoint = delegate.get(timeout);
+                    leaseAcquired.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    return endpoint;
+                } catch (TimeoutException e) {
+                    leaseTimedOut.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    throw e;
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return delegate.cancel();
+            }
+        };
+    }
+
+    private static Timer leaseTimer(MeterRegistry meterRegistry, String poolName, String outcome) {
+        return Timer.builder("dorossai.ai.pool.lease.wait")
+                .description("Time spent waiting to lease a pooled connection to the AI endpoint")
+                .tag("pool", poolName)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,25 @@
+package com.pi.dorossai.ai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The parts of a chat-completion response the application uses: the content
+ * of the first choice, why generation stopped, and the token usage.
+ * Token counts are -1 when the provider did not report them.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatCompletionResult {
+    private String content;
+    private String finishReason;
+    private int promptTokens = -1;
+    private int completionTokens = -1;
+    private int totalTokens = -1;
+
+    public boolean isTruncated() {
+        return "length".equals(finishReason);
+    }
+}
@@ -0,0 +1,31 @@
+package com.pi.dorossai.ai.provider;
+
+import com.pi.dorossai.ai.service.AiModelTier;
+import lombok.ToString;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * An OpenAI-compatible chat completions endpoint.
+ */
+@Value
+public class AiProvider {
+
+    String name;
+    String url;
+
+    @ToString.Exclude
+    String apiKey;
+
+    /**
+     * Model names to request instead of the tier's default, by tier.
+     */
+    Map<AiModelTier, String> models;
+
+    int weight;
+
+    public String modelFor(AiModelTier tier, String defaultModel) {
+        return models.getOrDefault(tier, defaultModel);
+    }
+}
@@ -0,0 +1,299 @@
+package com.pi.dorossai.ai.provider;
+
+import com.pi.dorossai.ai.config.AiRoutingProperties;
+import com.pi.dorossai.ai.config.AiServiceConfig;
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiRequestContext;
+import com.pi.dorossai.ai.service.AiServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Routes upstream AI calls between the configured {@link AiProvider}s.
+ *
+ * <p>For each provider an exponentially weighted average of its error rate
+ * is kept, and one of its latency per {@link AiFeature}, as a mind map takes
+ * far longer than a moderation check whichever provider answers it. The
+ * LATENCY strategy tries providers in order of expected time to a successful
+ * answer for the calling feature, {@code latency / (1 - error rate)}, sending
+ * a small share of calls elsewhere to keep the averages current. The WEIGHTED
+ * strategy picks the first provider at random by weight.
+ *
+ * <p>A provider whose error rate crosses {@code error-rate-threshold} is
+ * ejected for {@code ejection-duration}: it is then only tried after every
+ * healthy provider failed. Failures of the endpoint ({@link AiServiceException})
+ * fail over to the next provider right away, as long as the request's
+ * deadline allows.
+ */
+@Component
+@Slf4j
+public class AiProviderRouter {
+
+    static final String GITHUB_ENDPOINT = "https://models.inference.ai.azure.com/chat/completions";
+    static final String OPENAI_ENDPOINT = "https://api.openai.com/v1/chat/completions";
+
+    private final AiRoutingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final List<Route> routes = new ArrayList<>();
+
+    public AiProviderRouter(AiRoutingProperties properties, AiServiceConfig aiServiceConfig,
+                            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        for (Map.Entry<String, AiRoutingProperties.Provider> entry : properties.getProviders().entrySet()) {
+            AiRoutingProperties.Provider provider = entry.getValue();
+            if (provider.isEnabled()) {
+                routes.add(new Route(resolve(entry.getKey(), provider, aiServiceConfig)));
+            }
+        }
+        if (routes.isEmpty()) {
+            routes.add(new Route(new AiProvider("github", GITHUB_ENDPOINT, aiServiceConfig.getGithubApiKey(), Map.of(), 1)));
+        }
+        for (Route route : routes) {
+            String name = route.provider.getName();
+            Gauge.builder("dorossai.ai.provider.error-rate", route, Route::getErrorRate)
+                    .description("Smoothed share of failed calls to the AI provider")
+                    .tag("provider", name)
+                    .register(meterRegistry);
+        }
+        log.info("Routing AI calls between {} ({})", routes.stream().map(r -> r.provider.getName()).toList(),
+                properties.getStrategy());
+    }
+
+    public List<AiProvider> getProviders() {
+        return routes.stream().map(route -> route.provider).toList();
+    }
+
+    /**
+     * Runs {@code attempt} against the preferred provider for {@code feature}
+     * ({@code null} outside a feature), failing over to the others in order
+     * on endpoint failures. Throws the last failure if none succeeded.
+     */
+    public <T> T call(AiFeature feature, Function<AiProvider, T> attempt) {
+        return execute(feature, attempt, true);
+    }
+
+    /**
+     * Runs {@code attempt} against the preferred provider only, for calls
+     * that cannot be repeated once started, such as streams. Their latency is
+     * not recorded.
+     */
+    public <T> T callOnce(AiFeature feature, Function<AiProvider, T> attempt) {
+        return execute(feature, attempt, false);
+    }
+
+    private <T> T execute(AiFeature feature, Function<AiProvider, T> attempt, boolean failover) {
+        List<Route> order = order(feature);
+        AiServiceException lastFailure = null;
+        for (int i = 0; i < order.size(); i++) {
+            Route route = order.get(i);
+            if (i > 0) {
+                AiRequestContext context = AiRequestContext.current();
+                if (context.isCancelled() || context.remainingNanos() <= 0) {
+                    break;
+                }
+                String from = order.get(i - 1).provider.getName();
+                failoverCounter(from, route.provider.getName()).increment();
+                log.warn("Failing over AI call from {} to {}: {}", from, route.provider.getName(), lastFailure.getMessage());
+            }
+            long start = System.nanoTime();
+            try {
+                T value = attempt.apply(route.provider);
+                route.onSuccess(feature, failover ? System.nanoTime() - start : -1);
+                callCounter(route, "success").increment();
+                if (failover) {
+                    latencyGauge(route, feature);
+                }
+                return value;
+            } catch (AiServiceException e) {
+                route.onFailure();
+                callCounter(route, "failure").increment();
+                lastFailure = e;
+                if (!failover) {
+                    break;
+                }
+            }
+        }
+        throw lastFailure;
+    }
+
+    /**
+     * Providers in the order they should be tried: healthy ones by strategy,
+     * then ejected ones, soonest to return first.
+     */
+    List<Route> order(AiFeature feature) {
+        if (routes.size() == 1) {
+            return routes;
+        }
+        long now = System.nanoTime();
+        List<Route> healthy = new ArrayList<>();
+        List<Route> ejected = new ArrayList<>();
+        for (Route route : routes) {
+            (route.isEjected(now) ? ejected : healthy).add(route);
+        }
+        healthy.sort(Comparator.comparingDouble(route -> route.score(feature)));
+        ejected.sort(Comparator.comparingLong(Route::getEjectedUntil));
+
+        if (healthy.size() > 1) {
+            Route first = properties.getStrategy() == AiRoutingProperties.Strategy.WEIGHTED
+                    ? pickByWeight(healthy)
+                    : ThreadLocalRandom.current().nextDouble() < properties.getExplorationRatio()
+                    ? healthy.get(1 + ThreadLocalRandom.current().nextInt(healthy.size() - 1))
+                    : healthy.get(0);
+            healthy.remove(first);
+            healthy.add(0, first);
+        }
+        healthy.addAll(ejected);
+        return healthy;
+    }
+
+    private static Route pickByWeight(List<Route> candidates) {
+        int total = 0;
+        for (Route route : candidates) {
+            total += Math.max(0, route.provider.getWeight());
+        }
+        if (total == 0) {
+            return candidates.get(0);
+        }
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (Route route : candidates) {
+            pick -= Math.max(0, route.provider.getWeight());
+            if (pick < 0) {
+                return route;
+            }
+        }
+        return candidates.get(0);
+    }
+
+    private static AiProvider resolve(String name, AiRoutingProperties.Provider provider, AiServiceConfig aiServiceConfig) {
+        String url = provider.getUrl();
+        String apiKey = provider.getApiKey();
+        if ("github".equals(name)) {
+            url = url != null ? url : GITHUB_ENDPOINT;
+            apiKey = apiKey != null ? apiKey : aiServiceConfig.getGithubApiKey();
+        } else if ("openai".equals(name)) {
+            url = url != null ? url : OPENAI_ENDPOINT;
+            apiKey = apiKey != null ? apiKey : aiServiceConfig.getOpenaiApiKey();
+        }
+        if (url == null) {
+            throw new IllegalStateException("AI provider " + name + " has no url");
+        }
+        return new AiProvider(name, url, apiKey, Map.copyOf(provider.getModels()), provider.getWeight());
+    }
+
+    private Counter callCounter(Route route, String outcome) {
+        return Counter.builder("dorossai.ai.provider.calls")
+                .description("Upstream AI calls by provider and outcome")
+                .tag("provider", route.provider.getName())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private void latencyGauge(Route route, AiFeature feature) {
+        TimeGauge.builder("dorossai.ai.provider.latency", route, TimeUnit.NANOSECONDS,
+                        r -> Math.max(0, r.getLatency(feature)))
+                .description("Smoothed latency of successful calls to the AI provider for one feature")
+                .tag("provider", route.provider.getName())
+                .tag("feature", feature != null ? feature.getTag() : "none")
+                .register(meterRegistry);
+    }
+
+    private Counter failoverCounter(String from, String to) {
+        return Counter.builder("dorossai.ai.provider.failovers")
+                .description("AI calls retried on another provider after a failure")
+                .tag("from", from)
+                .tag("to", to)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A provider with its smoothed latency per feature, missing until the
+     * feature's first sample, and its smoothed error rate, starting at zero.
+     */
+    final class Route {
+
+        final AiProvider provider;
+        private final Map<AiFeature, Double> latencies = new HashMap<>();
+        private double errorRate;
+        private long calls;
+        private long ejectedUntil;
+        private boolean ejected;
+
+        Route(AiProvider provider) {
+            this.provider = provider;
+        }
+
+        synchronized double getLatency(AiFeature feature) {
+            return latencies.getOrDefault(feature, -1.0);
+        }
+
+        synchronized double getErrorRate() {
+            return errorRate;
+        }
+
+        synchronized long getEjectedUntil() {
+            return ejectedUntil;
+        }
+
+        synchronized boolean isEjected(long now) {
+            return ejected && now - ejectedUntil < 0;
+        }
+
+        /**
+         * Expected time to a successful answer for {@code feature}; providers
+         * untried for it come first.
+         */
+        synchronized double score(AiFeature feature) {
+            Double latency = latencies.get(feature);
+            if (latency == null) {
+                return 0;
+            }
+            return latency / Math.max(0.01, 1 - errorRate);
+        }
+
+        /**
+         * @param latencyNanos duration of the call, or -1 if not comparable
+         */
+        synchronized void onSuccess(AiFeature feature, long latencyNanos) {
+            if (latencyNanos >= 0) {
+                latencies.put(feature, smooth(latencies.getOrDefault(feature, -1.0), latencyNanos));
+            }
+            errorRate = smooth(errorRate, 0);
+            calls++;
+            if (ejected && errorRate < properties.getErrorRateThreshold()) {
+                ejected = false;
+                log.info("AI provider {} recovered", provider.getName());
+            }
+        }
+
+        synchronized void onFailure() {
+            errorRate = smooth(errorRate, 1);
+            calls++;
+            long now = System.nanoTime();
+            // A fresh provider is not ejected for its first few failures
+            if (calls >= properties.getMinCalls() && errorRate >= properties.getErrorRateThreshold() && !isEjected(now)) {
+                ejected = true;
+                ejectedUntil = now + properties.getEjectionDuration().toNanos();
+                log.warn("Ejecting AI provider {} for {} (error rate {}%)", provider.getName(),
+                        properties.getEjectionDuration(), Math.round(errorRate * 100));
+            }
+        }
+
+        private double smooth(double average, double sample) {
+            return average < 0 ? sample : average + properties.getSmoothing() * (sample - average);
+        }
+    }
+}
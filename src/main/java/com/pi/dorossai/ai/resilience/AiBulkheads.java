@@ -0,0 +1,182 @@
+package com.pi.dorossai.ai.resilience;
+
+import com.pi.dorossai.ai.config.AiBulkheadProperties;
+import com.pi.dorossai.ai.service.AiBulkheadFullException;
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiRequestContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Per-feature partitions of the upstream AI capacity, so long generations
+ * such as mind maps cannot starve latency-sensitive features like moderation.
+ *
+ * <p>Each feature owns {@code reserved} of the shared {@code capacity} slots.
+ * Beyond that it may borrow any free slot, idle reservations of other
+ * features included, up to its own {@code max-concurrent}, but never a slot
+ * that a waiting feature is still owed from its reservation. Borrowed slots
+ * are not preempted: an owner whose reservation is lent out gets the next
+ * slot released anywhere.
+ *
+ * <p>Callers that cannot enter wait in their partition's queue, at most
+ * {@code max-queue} of them and for at most {@code max-wait} or the time
+ * left to the request's deadline; others are rejected with {@link AiBulkheadFullException}.
+ */
+@Component
+public class AiBulkheads {
+
+    private static final AiFeature[] FEATURES = AiFeature.values();
+
+    private final AiBulkheadProperties properties;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private final int[] inUse = new int[FEATURES.length];
+    private final int[] queued = new int[FEATURES.length];
+    private int totalInUse;
+    private final MeterRegistry meterRegistry;
+
+    public AiBulkheads(AiBulkheadProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        int reserved = 0;
+        for (AiFeature feature : FEATURES) {
+            reserved += properties.partitionFor(feature).getReserved();
+        }
+        if (properties.isEnabled() && reserved > properties.getCapacity()) {
+            throw new IllegalStateException("AI bulkhead partitions reserve " + reserved
+                    + " slots but the capacity is only " + properties.getCapacity());
+        }
+        for (AiFeature feature : FEATURES) {
+            Gauge.builder("dorossai.ai.bulkhead.in-use", this, bulkheads -> bulkheads.read(bulkheads.inUse, feature))
+                    .description("Upstream AI calls running in the feature's partition")
+                    .tag("feature", feature.getTag())
+                    .register(meterRegistry);
+            Gauge.builder("dorossai.ai.bulkhead.queued", this, bulkheads -> bulkheads.read(bulkheads.queued, feature))
+                    .description("AI calls waiting for a slot in the feature's partition")
+                    .tag("feature", feature.getTag())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Runs {@code call} in the feature's partition.
+     *
+     * @throws AiBulkheadFullException without running the call, if the
+     *         partition had no slot in time
+     */
+    public <T> T call(AiFeature feature, Supplier<T> call) {
+        if (!properties.isEnabled()) {
+            return call.get();
+        }
+        acquire(feature);
+        try {
+            return call.get();
+        } finally {
+            release(feature);
+        }
+    }
+
+    private void acquire(AiFeature feature) {
+        int index = feature.ordinal();
+        AiBulkheadProperties.Partition partition = properties.partitionFor(feature);
+        lock.lock();
+        try {
+            // Callers of the same feature do not overtake each other
+            if (queued[index] == 0 && canEnter(index, partition)) {
+                enter(feature, partition);
+                return;
+            }
+            if (queued[index] >= partition.getMaxQueue()) {
+                rejectionCounter(feature, "queue-full").increment();
+                throw new AiBulkheadFullException("AI service capacity for " + feature.getTag()
+                        + " is exhausted, please try again later");
+            }
+            queued[index]++;
+            long remaining = Math.min(partition.getMaxWait().toNanos(), AiRequestContext.current().remainingNanos());
+            try {
+                while (!canEnter(index, partition)) {
+                    if (remaining <= 0) {
+                        rejectionCounter(feature, "timeout").increment();
+                        throw new AiBulkheadFullException("AI service capacity for " + feature.getTag()
+                                + " is exhausted, timed out waiting for a slot");
+                    }
+                    remaining = slotFreed.awaitNanos(remaining);
+                }
+                enter(feature, partition);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for an AI bulkhead slot");
+            } finally {
+                queued[index]--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canEnter(int index, AiBulkheadProperties.Partition partition) {
+        if (inUse[index] >= partition.getMaxConcurrent() || totalInUse >= properties.getCapacity()) {
+            return false;
+        }
+        if (inUse[index] < partition.getReserved()) {
+            return true;
+        }
+        // Borrow only what waiting owners are not still owed
+        int owed = 0;
+        for (int other = 0; other < FEATURES.length; other++) {
+            if (other != index && queued[other] > 0) {
+                owed += Math.max(0, properties.partitionFor(FEATURES[other]).getReserved() - inUse[other]);
+            }
+        }
+        return properties.getCapacity() - totalInUse > owed;
+    }
+
+    private void enter(AiFeature feature, AiBulkheadProperties.Partition partition) {
+        int index = feature.ordinal();
+        if (inUse[index] >= partition.getReserved()) {
+            Counter.builder("dorossai.ai.bulkhead.borrowed")
+                    .description("AI calls that ran on a slot beyond the feature's reservation")
+                    .tag("feature", feature.getTag())
+                    .register(meterRegistry)
+                    .increment();
+        }
+        inUse[index]++;
+        totalInUse++;
+    }
+
+    private void release(AiFeature feature) {
+        lock.lock();
+        try {
+            inUse[feature.ordinal()]--;
+            totalInUse--;
+            // Waiters of any partition may be the one entitled to this slot
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int read(int[] counts, AiFeature feature) {
+        lock.lock();
+        try {
+            return counts[feature.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Counter rejectionCounter(AiFeature feature, String reason) {
+        return Counter.builder("dorossai.ai.bulkhead.rejections")
+                .description("AI calls rejected by their feature's bulkhead")
+                .tag("feature", feature.getTag())
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
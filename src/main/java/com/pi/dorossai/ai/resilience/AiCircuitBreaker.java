@@ -0,0 +1,253 @@
+package com.pi.dorossai.ai.resilience;
+
+import com.pi.dorossai.ai.config.AiCircuitBreakerProperties;
+import com.pi.dorossai.ai.service.AiCircuitOpenException;
+import com.pi.dorossai.ai.service.AiConcurrencyLimitException;
+import com.pi.dorossai.ai.service.AiRequestContext;
+import com.pi.dorossai.ai.service.AiServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker shared by every upstream AI call, whatever the feature.
+ *
+ * <p>While CLOSED, the outcome of the last {@code window-size} calls is kept
+ * in a ring buffer. Once at least {@code minimum-calls} are recorded and the
+ * share of failed or of slow calls reaches its threshold, the circuit OPENs
+ * and calls fail immediately with {@link AiCircuitOpenException} for
+ * {@code open-duration}. The first call after that turns it HALF_OPEN, which
+ * lets {@code half-open-probes} calls through: one failure opens it again,
+ * all of them succeeding closes it.
+ *
+ * <p>Only {@link AiServiceException}s count as failures. Other exceptions
+ * (e.g. an unreadable completion) mean the endpoint did answer; calls
+ * rejected by the concurrency limiter, cancelled or cut short by their
+ * request's deadline are not recorded.
+ */
+@Component
+@Slf4j
+public class AiCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final AiCircuitBreakerProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final byte[] outcomes;
+    private int next;
+    private int bufferedCalls;
+    private int failedCalls;
+    private int slowCalls;
+    private int probeSuccesses;
+    private final AtomicInteger probePermits = new AtomicInteger();
+    private volatile State state = State.CLOSED;
+    private volatile long openUntil;
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter slowSuccesses;
+    private final Counter rejections;
+
+    public AiCircuitBreaker(AiCircuitBreakerProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.outcomes = new byte[Math.max(1, properties.getWindowSize())];
+        this.successes = callCounter("success");
+        this.failures = callCounter("failure");
+        this.slowSuccesses = callCounter("slow");
+        this.rejections = callCounter("rejected");
+        Gauge.builder("dorossai.ai.circuit-breaker.state", this, breaker -> breaker.getState().ordinal())
+                .description("State of the AI circuit breaker (0 closed, 1 open, 2 half-open)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a call whose duration counts towards the slow-call rate.
+     *
+     * @throws AiCircuitOpenException without running the call, while open
+     */
+    public <T> T call(Supplier<T> call) {
+        return execute(call, true);
+    }
+
+    /**
+     * Runs a call that is long by design, such as a streamed completion; only
+     * its failure counts.
+     */
+    public <T> T callIgnoringDuration(Supplier<T> call) {
+        return execute(call, false);
+    }
+
+    private <T> T execute(Supplier<T> call, boolean timed) {
+        if (!properties.isEnabled()) {
+            return call.get();
+        }
+        if (!tryAcquirePermission()) {
+            rejections.increment();
+            throw new AiCircuitOpenException("AI service is unavailable, failing fast while its circuit is open");
+        }
+
+        long start = System.nanoTime();
+        try {
+            T value = call.get();
+            onResult(false, timed && isSlow(start));
+            return value;
+        } catch (CancellationException | AiConcurrencyLimitException e) {
+            // Abandoned or never sent by us, says nothing about the endpoint
+            releasePermission();
+            throw e;
+        } catch (AiServiceException e) {
+            if (AiRequestContext.current().remainingNanos() <= 0) {
+                // Timed out on the caller's budget, not the endpoint's
+                releasePermission();
+                throw e;
+            }
+            onResult(true, timed && isSlow(start));
+            throw e;
+        } catch (RuntimeException e) {
+            onResult(false, timed && isSlow(start));
+            throw e;
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public synchronized int getBufferedCalls() {
+        return bufferedCalls;
+    }
+
+    public synchronized double getFailureRate() {
+        return bufferedCalls == 0 ? 0 : (double) failedCalls / bufferedCalls;
+    }
+
+    public synchronized double getSlowCallRate() {
+        return bufferedCalls == 0 ? 0 : (double) slowCalls / bufferedCalls;
+    }
+
+    private boolean tryAcquirePermission() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openUntil < 0) {
+                return false;
+            }
+            halfOpenIfExpired();
+        }
+        return probePermits.getAndUpdate(permits -> permits > 0 ? permits - 1 : 0) > 0;
+    }
+
+    private void releasePermission() {
+        if (state == State.HALF_OPEN) {
+            probePermits.incrementAndGet();
+        }
+    }
+
+    private boolean isSlow(long start) {
+        return System.nanoTime() - start > properties.getSlowCallDuration().toNanos();
+    }
+
+    private synchronized void onResult(boolean failed, boolean slow) {
+        if (failed) {
+            failures.increment();
+        } else if (slow) {
+            slowSuccesses.increment();
+        } else {
+            successes.increment();
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                open("a probe call " + (failed ? "failed" : "was slow"));
+            } else if (++probeSuccesses >= properties.getHalfOpenProbes()) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // Late result of a call started before the circuit opened
+            return;
+        }
+
+        if (bufferedCalls == outcomes.length) {
+            byte evicted = outcomes[next];
+            failedCalls -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            bufferedCalls++;
+        }
+        byte outcome = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+        outcomes[next] = outcome;
+        next = (next + 1) % outcomes.length;
+        failedCalls += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+
+        if (bufferedCalls >= properties.getMinimumCalls()) {
+            double failureRate = (double) failedCalls / bufferedCalls;
+            double slowCallRate = (double) slowCalls / bufferedCalls;
+            if (failureRate >= properties.getFailureRateThreshold()) {
+                open(String.format("failure rate %.0f%% over the last %d calls", failureRate * 100, bufferedCalls));
+            } else if (slowCallRate >= properties.getSlowCallRateThreshold()) {
+                open(String.format("slow call rate %.0f%% over the last %d calls", slowCallRate * 100, bufferedCalls));
+            }
+        }
+    }
+
+    private synchronized void halfOpenIfExpired() {
+        if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+            probeSuccesses = 0;
+            probePermits.set(Math.max(1, properties.getHalfOpenProbes()));
+            transition(State.HALF_OPEN);
+            log.info("AI circuit breaker half-open, probing the endpoint");
+        }
+    }
+
+    private void open(String reason) {
+        resetWindow();
+        openUntil = System.nanoTime() + properties.getOpenDuration().toNanos();
+        transition(State.OPEN);
+        log.warn("AI circuit breaker opened ({}), rejecting calls for {}", reason, properties.getOpenDuration());
+    }
+
+    private void close() {
+        resetWindow();
+        transition(State.CLOSED);
+        log.info("AI circuit breaker closed, endpoint recovered");
+    }
+
+    private void resetWindow() {
+        next = 0;
+        bufferedCalls = 0;
+        failedCalls = 0;
+        slowCalls = 0;
+    }
+
+    private void transition(State target) {
+        state = target;
+        Counter.builder("dorossai.ai.circuit-breaker.transitions")
+                .description("State changes of the AI circuit breaker")
+                .tag("state", target.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private Counter callCounter(String outcome) {
+        return Counter.builder("dorossai.ai.circuit-breaker.calls")
+                .description("AI calls seen by the circuit breaker by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
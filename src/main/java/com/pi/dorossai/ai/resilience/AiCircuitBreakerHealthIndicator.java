@@ -0,0 +1,39 @@
+package com.pi.dorossai.ai.resilience;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the AI circuit breaker as the {@code aiCircuitBreaker} health
+ * component. An open circuit uses its own status rather than DOWN, so an
+ * upstream outage does not fail the application's own health check; map it
+ * with {@code management.endpoint.health.status.order} if it should.
+ */
+@Component
+@RequiredArgsConstructor
+public class AiCircuitBreakerHealthIndicator implements HealthIndicator {
+
+    static final Status CIRCUIT_OPEN = new Status("CIRCUIT_OPEN", "AI calls are rejected until the endpoint recovers");
+    static final Status CIRCUIT_HALF_OPEN = new Status("CIRCUIT_HALF_OPEN", "Probing the AI endpoint");
+
+    private final AiCircuitBreaker aiCircuitBreaker;
+
+    @Override
+    public Health health() {
+        AiCircuitBreaker.State state = aiCircuitBreaker.getState();
+        Health.Builder builder = switch (state) {
+            case CLOSED -> Health.up();
+            case OPEN -> Health.status(CIRCUIT_OPEN);
+            case HALF_OPEN -> Health.status(CIRCUIT_HALF_OPEN);
+        };
+        return builder
+                .withDetail("state", state)
+                .withDetail("bufferedCalls", aiCircuitBreaker.getBufferedCalls())
+                .withDetail("failureRate", aiCircuitBreaker.getFailureRate())
+                .withDetail("slowCallRate", aiCircuitBreaker.getSlowCallRate())
+                .build();
+    }
+}
@@ -0,0 +1,305 @@
+package com.pi.dorossai.ai.resilience;
+
+import com.pi.dorossai.ai.config.AiConcurrencyLimitProperties;
+import com.pi.dorossai.ai.config.AiPriorityProperties;
+import com.pi.dorossai.ai.service.AiConcurrencyLimitException;
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiPriority;
+import com.pi.dorossai.ai.service.AiRequestContext;
+import com.pi.dorossai.ai.service.AiServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive limit on concurrent upstream AI calls (AIMD).
+ *
+ * <p>Every successful call while the limit is in use raises it by
+ * {@code 1 / limit}, i.e. by about one per round of calls. A congestion
+ * signal multiplies it by {@code backoff-ratio}: a failed upstream call
+ * (timeout, 5xx, 429) or one slower than {@code latency-tolerance} times the
+ * average latency of its feature. Features are averaged apart, as a quiz
+ * generation normally takes many times as long as a moderation call. The
+ * limit stays between {@code min-limit} and {@code max-limit}.
+ *
+ * <p>Callers beyond the limit wait, at most {@code max-queue} of them and
+ * for at most {@code max-wait} or the time left to the request's deadline;
+ * others are rejected with
+ * {@link AiConcurrencyLimitException}. A freed slot is handed to the waiter
+ * of the highest {@link AiPriority}, oldest first. Every
+ * {@code aging-interval} spent waiting raises a waiter by one class, so bulk
+ * calls still get through under sustained interactive load.
+ */
+@Component
+@Slf4j
+public class AiConcurrencyLimiter {
+
+    private static final double LATENCY_SMOOTHING = 0.05;
+    private static final int LATENCY_WARMUP = 10;
+
+    private final AiConcurrencyLimitProperties properties;
+    private final AiPriorityProperties priorityProperties;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<Waiter> waiters = new ArrayList<>();
+    private long enqueued;
+    private double limit;
+    private int inFlight;
+    /**
+     * Keyed by feature, {@code null} for calls outside of one.
+     */
+    private final Map<AiFeature, Latency> latencies = new HashMap<>();
+    private final Counter queueFull;
+    private final Counter waitTimeouts;
+
+    private final MeterRegistry meterRegistry;
+
+    public AiConcurrencyLimiter(AiConcurrencyLimitProperties properties, AiPriorityProperties priorityProperties,
+                                MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.priorityProperties = priorityProperties;
+        this.meterRegistry = meterRegistry;
+        this.limit = properties.getInitialLimit();
+        this.queueFull = rejectionCounter(meterRegistry, "queue-full");
+        this.waitTimeouts = rejectionCounter(meterRegistry, "timeout");
+        Gauge.builder("dorossai.ai.concurrency.limit", this, AiConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit of concurrent upstream AI calls")
+                .register(meterRegistry);
+        Gauge.builder("dorossai.ai.concurrency.in-flight", this, AiConcurrencyLimiter::getInFlight)
+                .description("Upstream AI calls currently holding a slot")
+                .register(meterRegistry);
+        Gauge.builder("dorossai.ai.concurrency.queued", this, AiConcurrencyLimiter::getQueued)
+                .description("AI calls waiting for a slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code call} once a slot is free. Its latency is compared with
+     * earlier calls of the same {@code feature}, which may be {@code null}.
+     *
+     * @throws AiConcurrencyLimitException without running the call, if no
+     *         slot became free in time
+     */
+    public <T> T call(AiFeature feature, AiPriority priority, Supplier<T> call) {
+        return execute(feature, priority, call, true);
+    }
+
+    /**
+     * Like {@link #call(AiFeature, AiPriority, Supplier)} for calls that are
+     * long by design, such as streamed completions; their latency is not a
+     * congestion signal.
+     */
+    public <T> T callIgnoringDuration(AiPriority priority, Supplier<T> call) {
+        return execute(null, priority, call, false);
+    }
+
+    private <T> T execute(AiFeature feature, AiPriority priority, Supplier<T> call, boolean timed) {
+        if (!properties.isEnabled()) {
+            return call.get();
+        }
+        acquire(priority);
+        long start = System.nanoTime();
+        try {
+            T value = call.get();
+            release(Outcome.SUCCESS, feature, timed ? System.nanoTime() - start : -1);
+            return value;
+        } catch (CancellationException e) {
+            release(Outcome.IGNORED, feature, -1);
+            throw e;
+        } catch (AiServiceException e) {
+            // Cut short by the request's own deadline, not a congestion signal
+            release(AiRequestContext.current().remainingNanos() > 0 ? Outcome.DROPPED : Outcome.IGNORED, feature, -1);
+            throw e;
+        } catch (RuntimeException e) {
+            // The endpoint answered, just not usefully
+            release(Outcome.IGNORED, feature, -1);
+            throw e;
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquire(AiPriority priority) {
+        lock.lock();
+        try {
+            // Newcomers do not overtake waiting callers
+            if (waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (waiters.size() >= properties.getMaxQueue()) {
+                queueFull.increment();
+                throw new AiConcurrencyLimitException("AI service is at its concurrency limit, please try again later");
+            }
+            Waiter waiter = new Waiter(priority, enqueued++, System.nanoTime(), lock.newCondition());
+            waiters.add(waiter);
+            long remaining = Math.min(properties.getMaxWait().toNanos(), AiRequestContext.current().remainingNanos());
+            try {
+                while (!waiter.granted) {
+                    if (remaining <= 0) {
+                        waitTimeouts.increment();
+                        throw new AiConcurrencyLimitException("AI service is at its concurrency limit, timed out waiting for a slot");
+                    }
+                    remaining = waiter.signal.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (waiter.granted) {
+                    // Hand the slot on rather than leaking it
+                    inFlight--;
+                    grantSlots();
+                }
+                throw new CancellationException("Interrupted while waiting for an AI call slot");
+            } finally {
+                if (!waiter.granted) {
+                    waiters.remove(waiter);
+                }
+            }
+            Timer.builder("dorossai.ai.concurrency.queue-wait")
+                    .description("Time AI calls waited for a slot, by priority")
+                    .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - waiter.since, TimeUnit.NANOSECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands free slots to the most urgent waiters; the caller holds the lock.
+     */
+    private void grantSlots() {
+        long now = System.nanoTime();
+        long agingNanos = Math.max(1, priorityProperties.getAgingInterval().toNanos());
+        while (inFlight < (int) limit && !waiters.isEmpty()) {
+            Waiter next = waiters.get(0);
+            for (Waiter waiter : waiters) {
+                if (waiter.rank(now, agingNanos) < next.rank(now, agingNanos)
+                        || waiter.rank(now, agingNanos) == next.rank(now, agingNanos) && waiter.order < next.order) {
+                    next = waiter;
+                }
+            }
+            waiters.remove(next);
+            next.granted = true;
+            inFlight++;
+            next.signal.signal();
+        }
+    }
+
+    /**
+     * @param latencyNanos latency of a successful timed call, otherwise -1
+     */
+    private void release(Outcome outcome, AiFeature feature, long latencyNanos) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= (int) limit / 2;
+            inFlight--;
+            boolean slow = false;
+            if (latencyNanos >= 0) {
+                Latency latency = latencies.computeIfAbsent(feature, f -> new Latency());
+                slow = latency.samples >= LATENCY_WARMUP
+                        && latencyNanos > latency.average * properties.getLatencyTolerance();
+                latency.record(latencyNanos);
+            }
+
+            double previous = limit;
+            if (outcome == Outcome.DROPPED || slow) {
+                limit = Math.max(properties.getMinLimit(), limit * properties.getBackoffRatio());
+            } else if (outcome == Outcome.SUCCESS && saturated) {
+                limit = Math.min(properties.getMaxLimit(), limit + 1.0 / limit);
+            }
+            if ((int) limit != (int) previous) {
+                log.debug("AI concurrency limit {} -> {}", (int) previous, (int) limit);
+            }
+            grantSlots();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private enum Outcome {
+        SUCCESS, DROPPED, IGNORED
+    }
+
+    /**
+     * Moving average of the successful call latencies of one feature.
+     */
+    private static final class Latency {
+
+        double average;
+        long samples;
+
+        void record(long latencyNanos) {
+            average = samples == 0 ? latencyNanos : average + LATENCY_SMOOTHING * (latencyNanos - average);
+            samples++;
+        }
+    }
+
+    private static final class Waiter {
+
+        final AiPriority priority;
+        final long order;
+        final long since;
+        final Condition signal;
+        boolean granted;
+
+        Waiter(AiPriority priority, long order, long since, Condition signal) {
+            this.priority = priority;
+            this.order = order;
+            this.since = since;
+            this.signal = signal;
+        }
+
+        /**
+         * Priority class after aging; lower is served first.
+         */
+        long rank(long now, long agingNanos) {
+            return priority.ordinal() - (now - since) / agingNanos;
+        }
+    }
+
+    private static Counter rejectionCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("dorossai.ai.concurrency.rejections")
+                .description("AI calls rejected by the concurrency limiter")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,146 @@
+package com.pi.dorossai.ai.resilience;
+
+import com.pi.dorossai.ai.config.AiRetryProperties;
+import com.pi.dorossai.ai.service.AiBulkheadFullException;
+import com.pi.dorossai.ai.service.AiCircuitOpenException;
+import com.pi.dorossai.ai.service.AiConcurrencyLimitException;
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiRequestContext;
+import com.pi.dorossai.ai.service.AiServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Retry policy shared by all upstream AI calls.
+ *
+ * <p>Only failures of the endpoint itself are retried: connection errors,
+ * timeouts, 5xx and 429 responses ({@link AiServiceException}). Calls
+ * rejected locally by the circuit breaker, concurrency limiter, bulkheads or
+ * token budgets are not, nor are unreadable completions or client errors.
+ *
+ * <p>Retries draw from a token bucket that every successful call refills by
+ * {@code budget-ratio}, so during a brownout retries shrink to that share of
+ * the traffic that still succeeds instead of multiplying the load. Delays use
+ * decorrelated jitter: each is random between {@code base-delay} and three
+ * times the previous one, capped at {@code max-delay}, so callers that failed
+ * together do not retry in lockstep.
+ *
+ * <p>No retry is started once the request's client has gone away or when its
+ * deadline ({@link AiRequestContext}) would pass before the backoff ends.
+ */
+@Component
+@Slf4j
+public class AiRetryPolicy {
+
+    private final AiRetryProperties properties;
+    private final MeterRegistry meterRegistry;
+    private double tokens;
+
+    public AiRetryPolicy(AiRetryProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.tokens = properties.getBudgetMaxTokens();
+        Gauge.builder("dorossai.ai.retry.budget", this, AiRetryPolicy::getBudget)
+                .description("Retries currently available from the AI retry budget")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code attempt}, retrying retryable failures while attempts and
+     * budget last. Blocks the calling thread during backoff.
+     */
+    public <T> T execute(AiFeature feature, Supplier<T> attempt) {
+        if (!properties.isEnabled()) {
+            return attempt.get();
+        }
+        long delay = properties.getBaseDelay().toMillis();
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                T value = attempt.get();
+                deposit();
+                return value;
+            } catch (RuntimeException e) {
+                if (!isRetryable(e)) {
+                    throw e;
+                }
+                if (attemptNumber >= properties.getMaxAttempts()) {
+                    retryCounter(feature, "attempts-exhausted").increment();
+                    throw e;
+                }
+                delay = nextDelay(delay);
+                AiRequestContext context = AiRequestContext.current();
+                if (context.isCancelled() || context.remainingNanos() <= TimeUnit.MILLISECONDS.toNanos(delay)) {
+                    retryCounter(feature, "deadline").increment();
+                    log.warn("Not retrying {} call, no time left before the request deadline: {}",
+                            feature.getTag(), e.getMessage());
+                    throw e;
+                }
+                if (!tryWithdraw()) {
+                    retryCounter(feature, "budget-exhausted").increment();
+                    log.warn("Not retrying {} call, retry budget exhausted: {}", feature.getTag(), e.getMessage());
+                    throw e;
+                }
+                retryCounter(feature, "retried").increment();
+                log.warn("Retrying {} call in {} ms (attempt {} of {}): {}",
+                        feature.getTag(), delay, attemptNumber + 1, properties.getMaxAttempts(), e.getMessage());
+                sleep(delay, e);
+            }
+        }
+    }
+
+    public synchronized double getBudget() {
+        return tokens;
+    }
+
+    static boolean isRetryable(Throwable e) {
+        return e instanceof AiServiceException
+                && !(e instanceof AiCircuitOpenException)
+                && !(e instanceof AiConcurrencyLimitException)
+                && !(e instanceof AiBulkheadFullException);
+    }
+
+    private long nextDelay(long previous) {
+        long base = properties.getBaseDelay().toMillis();
+        long upper = Math.max(base + 1, previous * 3);
+        return Math.min(properties.getMaxDelay().toMillis(), ThreadLocalRandom.current().nextLong(base, upper));
+    }
+
+    private synchronized void deposit() {
+        tokens = Math.min(properties.getBudgetMaxTokens(), tokens + properties.getBudgetRatio());
+    }
+
+    private synchronized boolean tryWithdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    private static void sleep(long millis, RuntimeException failure) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            CancellationException cancelled = new CancellationException("Interrupted while backing off before a retry");
+            cancelled.addSuppressed(failure);
+            throw cancelled;
+        }
+    }
+
+    private Counter retryCounter(AiFeature feature, String result) {
+        return Counter.builder("dorossai.ai.retry.attempts")
+                .description("Failed AI call attempts by feature and whether they were retried")
+                .tag("feature", feature.getTag())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,12 @@
+package com.pi.dorossai.ai.service;
+
+/**
+ * Thrown without calling upstream when a feature's bulkhead partition has no
+ * slot it may use and its queue is full or the wait timed out.
+ */
+public class AiBulkheadFullException extends AiServiceException {
+
+    public AiBulkheadFullException(String message) {
+        super(message, null, false);
+    }
+}
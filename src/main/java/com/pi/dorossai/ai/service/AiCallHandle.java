@@ -0,0 +1,71 @@
+package com.pi.dorossai.ai.service;
+
+import org.apache.hc.core5.concurrent.Cancellable;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+/**
+ * Lets one upstream AI call be aborted from another thread. While
+ * {@link #run(Supplier)} executes, HTTP requests created on that thread are
+ * attached to the handle, and {@link #cancel()} aborts the one in progress,
+ * closing its connection instead of waiting for the response.
+ */
+public class AiCallHandle {
+
+    private static final ThreadLocal<AiCallHandle> CURRENT = new ThreadLocal<>();
+
+    private volatile boolean cancelled;
+    private volatile boolean running;
+    private volatile Cancellable request;
+
+    /**
+     * @return the handle of the call running on this thread, if any
+     */
+    public static AiCallHandle current() {
+        return CURRENT.get();
+    }
+
+    public <T> T run(Supplier<T> call) {
+        if (cancelled) {
+            throw new CancellationException("AI call cancelled before it started");
+        }
+        AiCallHandle previous = CURRENT.get();
+        CURRENT.set(this);
+        running = true;
+        try {
+            return call.get();
+        } finally {
+            running = false;
+            request = null;
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Called by the HTTP request factory for every request the call creates.
+     */
+    public void attach(Cancellable request) {
+        this.request = request;
+        // Either this check or cancel() sees the other's write
+        if (cancelled) {
+            request.cancel();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        Cancellable current = request;
+        if (running && current != null) {
+            current.cancel();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,34 @@
+package com.pi.dorossai.ai.service;
+
+import org.apache.hc.core5.concurrent.Cancellable;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cancellation signal of one API request. Upstream requests made on its
+ * behalf are attached to it, and {@link #cancel()} aborts those still
+ * running, e.g. once the client has disconnected.
+ */
+public class AiCancellation {
+
+    private final Set<Cancellable> requests = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    public void attach(Cancellable request) {
+        requests.add(request);
+        // Either this check or cancel() sees the other's write
+        if (cancelled) {
+            request.cancel();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        requests.forEach(Cancellable::cancel);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
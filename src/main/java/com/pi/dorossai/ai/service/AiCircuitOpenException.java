@@ -0,0 +1,12 @@
+package com.pi.dorossai.ai.service;
+
+/**
+ * Thrown without calling upstream while the circuit breaker is open. Created
+ * without a stack trace, since it is expected in bulk during an outage.
+ */
+public class AiCircuitOpenException extends AiServiceException {
+
+    public AiCircuitOpenException(String message) {
+        super(message, null, false);
+    }
+}
@@ -0,0 +1,12 @@
+package com.pi.dorossai.ai.service;
+
+/**
+ * Thrown without calling upstream when the adaptive concurrency limit is
+ * reached and the call could not be queued or waited too long for a slot.
+ */
+public class AiConcurrencyLimitException extends AiServiceException {
+
+    public AiConcurrencyLimitException(String message) {
+        super(message, null, false);
+    }
+}
@@ -0,0 +1,40 @@
+package com.pi.dorossai.ai.service;
+
+import java.util.Locale;
+
+/**
+ * The application features that call the AI model. Used to apply per-feature
+ * policies (caching, limits) and to tag metrics.
+ */
+public enum AiFeature {
+    SUMMARIZATION(true),
+    QUIZ(true),
+    FLASHCARDS(true),
+    KEY_POINTS(true),
+    MIND_MAP(false),
+    MODERATION(true),
+    CODE_EXPLANATION(false),
+    WRITING(true),
+    DOCUMENT_QA(true);
+
+    private final boolean jsonOutput;
+
+    AiFeature(boolean jsonOutput) {
+        this.jsonOutput = jsonOutput;
+    }
+
+    /**
+     * @return whether the feature's prompts ask for a JSON answer
+     */
+    public boolean isJsonOutput() {
+        return jsonOutput;
+    }
+
+    /**
+     * @return lower-case, dash-separated name, e.g. {@code key-points}, as used
+     *         in property keys and metric tags
+     */
+    public String getTag() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
@@ -0,0 +1,242 @@
+package com.pi.dorossai.ai.service;
+
+import com.pi.dorossai.ai.config.AiHedgingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Hedged upstream calls: if an attempt has not answered within the feature's
+ * recent latency percentile, an identical second attempt is started on the AI
+ * executor and whichever succeeds first wins. The other attempt is cancelled
+ * through its {@link AiCallHandle}, which aborts its HTTP request.
+ *
+ * <p>Hedges are paid from a global token bucket: every hedgeable call adds
+ * {@code budget-ratio} tokens and every hedge costs one, so hedging adds at
+ * most that share of extra upstream load.
+ *
+ * <p>The hedge win rate per feature is
+ * {@code dorossai.ai.hedging.wins{winner=hedge}} over
+ * {@code dorossai.ai.hedging.hedges{result=launched}}.
+ */
+@Component
+@Slf4j
+public class AiHedging {
+
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final AiHedgingProperties properties;
+    private final Executor aiTaskExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Map<AiFeature, LatencyWindow> windows = new ConcurrentHashMap<>();
+    private final HedgeBudget budget;
+
+    public AiHedging(AiHedgingProperties properties, @Qualifier("aiTaskExecutor") Executor aiTaskExecutor,
+                     MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.aiTaskExecutor = aiTaskExecutor;
+        this.meterRegistry = meterRegistry;
+        this.budget = new HedgeBudget(properties.getBudgetRatio(), properties.getMaxBurst());
+    }
+
+    /**
+     * Runs {@code attempt} on the calling thread, hedging it if enabled for
+     * the feature. Fails only if every attempt failed, with the first failure.
+     */
+    public <T> T call(AiFeature feature, Supplier<T> attempt) {
+        if (!properties.isEnabled(feature)) {
+            return attempt.get();
+        }
+        LatencyWindow window = windowFor(feature);
+        long delay = window.getThreshold();
+        if (delay < 0) {
+            // Not enough history for a meaningful threshold yet
+            return window.timed(attempt);
+        }
+        budget.deposit();
+
+        Race<T> race = new Race<>();
+        // The delayer thread bypasses the executor's task decorator
+        AiRequestContext context = AiRequestContext.current();
+        CompletableFuture.runAsync(() -> context.call(() -> {
+                    race.hedge(feature, window, attempt);
+                    return null;
+                }),
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS, aiTaskExecutor));
+        race.run(feature, window, attempt, race.primary, race.hedge, "primary");
+        try {
+            return race.winner.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private LatencyWindow windowFor(AiFeature feature) {
+        return windows.computeIfAbsent(feature, f -> {
+            LatencyWindow window = new LatencyWindow(properties.getWindow());
+            TimeGauge.builder("dorossai.ai.hedging.threshold", window,
+                            TimeUnit.NANOSECONDS, w -> Math.max(0, w.getThreshold()))
+                    .description("Delay after which a hedged AI call is sent")
+                    .tag("feature", f.getTag())
+                    .register(meterRegistry);
+            return window;
+        });
+    }
+
+    private Counter hedgeCounter(AiFeature feature, String result) {
+        return Counter.builder("dorossai.ai.hedging.hedges")
+                .description("Hedge opportunities by whether a second request was sent")
+                .tag("feature", feature.getTag())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter winCounter(AiFeature feature, String winner) {
+        return Counter.builder("dorossai.ai.hedging.wins")
+                .description("Hedged AI calls by the attempt that answered first")
+                .tag("feature", feature.getTag())
+                .tag("winner", winner)
+                .register(meterRegistry);
+    }
+
+    /**
+     * One hedged call: the primary attempt, at most one hedge, and the future
+     * completed by the first success or, once both ended, the first failure.
+     */
+    private final class Race<T> {
+
+        final CompletableFuture<T> winner = new CompletableFuture<>();
+        final AiCallHandle primary = new AiCallHandle();
+        final AiCallHandle hedge = new AiCallHandle();
+        final AtomicInteger running = new AtomicInteger(1);
+        final AtomicReference<RuntimeException> firstFailure = new AtomicReference<>();
+        volatile boolean hedged;
+
+        void hedge(AiFeature feature, LatencyWindow window, Supplier<T> attempt) {
+            if (winner.isDone() || AiRequestContext.current().remainingNanos() <= 0) {
+                return;
+            }
+            if (!budget.tryAcquire()) {
+                hedgeCounter(feature, "budget-exhausted").increment();
+                return;
+            }
+            // Only start while the primary still runs, or no one would complete the winner
+            if (running.getAndUpdate(n -> n == 0 ? 0 : n + 1) == 0) {
+                budget.refund();
+                return;
+            }
+            hedged = true;
+            hedgeCounter(feature, "launched").increment();
+            log.debug("No {} response after {} ms, sending a hedged request",
+                    feature.getTag(), TimeUnit.NANOSECONDS.toMillis(window.getThreshold()));
+            run(feature, window, attempt, hedge, primary, "hedge");
+        }
+
+        void run(AiFeature feature, LatencyWindow window, Supplier<T> attempt,
+                 AiCallHandle own, AiCallHandle other, String role) {
+            try {
+                T value = own.run(() -> window.timed(attempt));
+                if (winner.complete(value)) {
+                    other.cancel();
+                    if (hedged) {
+                        winCounter(feature, role).increment();
+                    }
+                }
+            } catch (RuntimeException e) {
+                firstFailure.compareAndSet(null, e);
+            } finally {
+                if (running.decrementAndGet() == 0 && !winner.isDone()) {
+                    winner.completeExceptionally(firstFailure.get());
+                }
+            }
+        }
+    }
+
+    /**
+     * Ring buffer of the latest successful attempt latencies of a feature,
+     * with the configured percentile refreshed every few samples.
+     */
+    private final class LatencyWindow {
+
+        private final long[] samples;
+        private int count;
+        private int next;
+        private volatile long threshold = -1;
+
+        LatencyWindow(int size) {
+            this.samples = new long[Math.max(1, size)];
+        }
+
+        <T> T timed(Supplier<T> attempt) {
+            long start = System.nanoTime();
+            T value = attempt.get();
+            record(System.nanoTime() - start);
+            return value;
+        }
+
+        long getThreshold() {
+            return threshold;
+        }
+
+        private synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            if (count >= properties.getMinSamples() && (next % RECOMPUTE_EVERY == 0 || threshold < 0)) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(properties.getPercentile() * count) - 1;
+                long percentile = sorted[Math.max(0, Math.min(count - 1, index))];
+                threshold = Math.max(properties.getMinDelay().toNanos(), percentile);
+            }
+        }
+    }
+
+    /**
+     * Token bucket shared by all features.
+     */
+    private static final class HedgeBudget {
+
+        private final double ratio;
+        private final double capacity;
+        private double tokens;
+
+        HedgeBudget(double ratio, int capacity) {
+            this.ratio = ratio;
+            this.capacity = capacity;
+        }
+
+        synchronized void deposit() {
+            tokens = Math.min(capacity, tokens + ratio);
+        }
+
+        synchronized boolean tryAcquire() {
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        synchronized void refund() {
+            tokens = Math.min(capacity, tokens + 1);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.pi.dorossai.ai.service;
+
+import com.pi.dorossai.ai.dto.ChatCompletionResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-feature latency, token and outcome metrics of AI calls, tagged with
+ * {@link AiFeature#getTag()} ({@code none} for calls outside a feature).
+ * Latencies and token counts publish percentile histograms, so they can be
+ * aggregated across instances from {@code /actuator/prometheus}.
+ *
+ * <ul>
+ *   <li>{@code dorossai.ai.call.duration{feature,outcome}}: a feature's call
+ *       as its caller sees it, including cache, queueing and retries</li>
+ *   <li>{@code dorossai.ai.upstream.latency{feature,tier,outcome}}: one upstream
+ *       attempt, failed ones included</li>
+ *   <li>{@code dorossai.ai.upstream.ttfb{feature}}: time until the response
+ *       headers of an attempt</li>
+ *   <li>{@code dorossai.ai.stream.ttfb{feature}}: time until the first token of
+ *       a streamed answer, what a streaming client waits for</li>
+ *   <li>{@code dorossai.ai.stream.duration{feature}}: a streamed answer from
+ *       request to last token</li>
+ *   <li>{@code dorossai.ai.upstream.tokens{feature,tier,type}}: prompt and
+ *       completion tokens from the usage block of the response</li>
+ *   <li>{@code dorossai.ai.fallbacks{feature,reason}}: canned answers served
+ *       instead of the model's</li>
+ *   <li>{@code dorossai.ai.parse-failures{feature}}: answers that were not valid JSON</li>
+ * </ul>
+ *
+ * Retries are counted by {@code dorossai.ai.retry.attempts{feature,result}}.
+ */
+@Component
+@RequiredArgsConstructor
+public class AiMetrics {
+
+    private static final String NO_FEATURE = "none";
+    // Upper bounds of the histogram buckets; the defaults stop at 30s and go up to Long.MAX_VALUE tokens
+    private static final Duration MAX_EXPECTED_LATENCY = Duration.ofMinutes(3);
+    private static final double MAX_EXPECTED_TOKENS = 32_000;
+
+    private final MeterRegistry meterRegistry;
+
+    public void recordCall(AiFeature feature, long nanos, Throwable error) {
+        Timer.builder("dorossai.ai.call.duration")
+                .description("Duration of AI calls as seen by the feature, including cache, queueing and retries")
+                .tag("feature", tag(feature))
+                .tag("outcome", outcome(error))
+                .publishPercentileHistogram()
+                .maximumExpectedValue(MAX_EXPECTED_LATENCY)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFirstByte(AiFeature feature, long nanos) {
+        Timer.builder("dorossai.ai.upstream.ttfb")
+                .description("Time until the response headers of an upstream AI call arrived")
+                .tag("feature", tag(feature))
+                .publishPercentileHistogram()
+                .maximumExpectedValue(MAX_EXPECTED_LATENCY)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFirstToken(AiFeature feature, long nanos) {
+        Timer.builder("dorossai.ai.stream.ttfb")
+                .description("Time until the first streamed token of an AI completion")
+                .tag("feature", tag(feature))
+                .publishPercentileHistogram()
+                .maximumExpectedValue(MAX_EXPECTED_LATENCY)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStream(AiFeature feature, long nanos) {
+        Timer.builder("dorossai.ai.stream.duration")
+                .description("Total duration of a streamed AI completion")
+                .tag("feature", tag(feature))
+                .publishPercentileHistogram()
+                .maximumExpectedValue(MAX_EXPECTED_LATENCY)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records one upstream attempt; {@code result} is {@code null} and
+     * {@code error} set if it failed.
+     */
+    public void recordUpstream(AiFeature feature, AiModelTier tier, long nanos, ChatCompletionResult result,
+                               Throwable error) {
+        String tierTag = tier.name().toLowerCase(Locale.ROOT);
+        Timer.builder("dorossai.ai.upstream.latency")
+                .description("Duration of single upstream AI calls")
+                .tag("feature", tag(feature))
+                .tag("tier", tierTag)
+                .tag("outcome", outcome(error))
+                .publishPercentileHistogram()
+                .maximumExpectedValue(MAX_EXPECTED_LATENCY)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (result == null) {
+            return;
+        }
+        // Usage is -1 when the endpoint did not report it
+        if (result.getPromptTokens() >= 0) {
+            tokenSummary(feature, tierTag, "prompt").record(result.getPromptTokens());
+        }
+        if (result.getCompletionTokens() >= 0) {
+            tokenSummary(feature, tierTag, "completion").record(result.getCompletionTokens());
+        }
+    }
+
+    /**
+     * Counts a fallback answer served because of {@code reason}, e.g.
+     * {@code timeout} or {@code error}.
+     */
+    public void fallback(AiFeature feature, String reason) {
+        Counter.builder("dorossai.ai.fallbacks")
+                .description("Fallback answers served instead of the model's")
+                .tag("feature", tag(feature))
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Counts an answer that was not valid JSON and was replaced by a fallback.
+     */
+    public void parseFailure(AiFeature feature) {
+        Counter.builder("dorossai.ai.parse-failures")
+                .description("AI answers that could not be parsed as JSON")
+                .tag("feature", tag(feature))
+                .register(meterRegistry)
+                .increment();
+        fallback(feature, "invalid-json");
+    }
+
+    private DistributionSummary tokenSummary(AiFeature feature, String tier, String type) {
+        return DistributionSummary.builder("dorossai.ai.upstream.tokens")
+                .description("Tokens per upstream AI call, as reported by the endpoint")
+                .baseUnit("tokens")
+                .tag("feature", tag(feature))
+                .tag("tier", tier)
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(MAX_EXPECTED_TOKENS)
+                .register(meterRegistry);
+    }
+
+    private static String tag(AiFeature feature) {
+        return feature != null ? feature.getTag() : NO_FEATURE;
+    }
+
+    private static String outcome(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause == null) {
+            return "success";
+        }
+        if (cause instanceof AiTimeoutException) {
+            return "timeout";
+        }
+        if (cause instanceof CancellationException) {
+            return "cancelled";
+        }
+        if (cause instanceof AiTokenBudgetExceededException) {
+            return "rejected";
+        }
+        return "error";
+    }
+}
@@ -0,0 +1,80 @@
+package com.pi.dorossai.ai.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pi.dorossai.ai.config.AiModelProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Chooses the model tier of each call.
+ *
+ * <p>A call goes to the small tier if its prompt is no longer than the
+ * feature's {@code small-max-chars} and the caller did not ask for more.
+ * Small-tier answers of JSON features that do not parse are escalated to the
+ * large tier.
+ *
+ * <p>{@code dorossai.ai.model.escalations} counts retried answers by feature.
+ * What each tier costs is recorded per attempt by {@link AiMetrics}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AiModelSelector {
+
+    private final AiModelProperties properties;
+    private final AiResponseCleaner aiResponseCleaner;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    public AiModelTier select(AiRequest request) {
+        if (!properties.isEnabled() || request.getMinimumTier() == AiModelTier.LARGE) {
+            return AiModelTier.LARGE;
+        }
+        int smallMaxChars = properties.getSmallMaxChars().getOrDefault(request.getFeature(), 0);
+        return request.getInputChars() <= smallMaxChars ? AiModelTier.SMALL : AiModelTier.LARGE;
+    }
+
+    public String modelFor(AiModelTier tier) {
+        return properties.modelFor(tier);
+    }
+
+    /**
+     * @return whether {@code content}, answered by {@code tier}, should be
+     *         requested again from the large tier
+     */
+    public boolean shouldEscalate(AiFeature feature, AiModelTier tier, String content) {
+        if (tier == AiModelTier.LARGE || !properties.isEscalateOnInvalidJson() || !feature.isJsonOutput()
+                || isJson(content)) {
+            return false;
+        }
+        log.warn("Unparseable {} answer from the {} tier, escalating to the large tier", feature.getTag(), tierTag(tier));
+        Counter.builder("dorossai.ai.model.escalations")
+                .description("Small-tier AI answers requested again from the large tier")
+                .tag("feature", feature.getTag())
+                .register(meterRegistry)
+                .increment();
+        return true;
+    }
+
+    /**
+     * @return whether {@code content}, cleaned up like the features do, parses as JSON
+     */
+    boolean isJson(String content) {
+        try {
+            objectMapper.readTree(aiResponseCleaner.cleanJsonResponse(content));
+            return true;
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+
+    private static String tierTag(AiModelTier tier) {
+        return tier.name().toLowerCase(Locale.ROOT);
+    }
+}
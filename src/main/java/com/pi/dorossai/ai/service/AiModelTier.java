@@ -0,0 +1,15 @@
+package com.pi.dorossai.ai.service;
+
+/**
+ * Size class of the model a call is sent to, mapped to a model name by
+ * {@code dorossai.ai.models.tiers.*}.
+ */
+public enum AiModelTier {
+
+    /**
+     * Faster and cheaper, for short inputs.
+     */
+    SMALL,
+
+    LARGE
+}
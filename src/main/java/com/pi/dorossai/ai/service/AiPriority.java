@@ -0,0 +1,41 @@
+package com.pi.dorossai.ai.service;
+
+import java.util.Locale;
+
+/**
+ * Scheduling class of an AI call, from most to least urgent. Callers waiting
+ * for upstream capacity are served in this order, subject to aging.
+ */
+public enum AiPriority {
+
+    /**
+     * A user is blocked on the answer, e.g. moderation before publishing.
+     */
+    INTERACTIVE,
+
+    STANDARD,
+
+    /**
+     * Large generations or batch clients that tolerate queueing.
+     */
+    BULK;
+
+    /**
+     * @return the priority named by {@code value} (case-insensitive), or
+     *         {@code null} if it names none
+     */
+    public static AiPriority parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public AiPriority lowest(AiPriority other) {
+        return other != null && other.ordinal() > ordinal() ? other : this;
+    }
+}
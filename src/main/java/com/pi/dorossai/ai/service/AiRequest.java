@@ -0,0 +1,51 @@
+package com.pi.dorossai.ai.service;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A chat completion requested by a feature, for callers that need more than
+ * {@link AiService#callGithubInference(AiFeature, List, double)} offers.
+ */
+@Value
+@Builder
+public class AiRequest {
+
+    @NonNull
+    AiFeature feature;
+
+    @NonNull
+    List<Map<String, String>> messages;
+
+    double temperature;
+
+    /**
+     * Smallest model tier that may answer, e.g. {@link AiModelTier#LARGE}
+     * for advanced requests whatever their size.
+     */
+    @Builder.Default
+    AiModelTier minimumTier = AiModelTier.SMALL;
+
+    /**
+     * Expected size of the answer in tokens, or {@code null} for the
+     * feature's output budget; sent as {@code max_tokens}, capped by that
+     * budget.
+     */
+    Integer maxOutputTokens;
+
+    /**
+     * @return total length of the message contents, in characters
+     */
+    public int getInputChars() {
+        int chars = 0;
+        for (Map<String, String> message : messages) {
+            String content = message.get("content");
+            chars += content != null ? content.length() : 0;
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,140 @@
+package com.pi.dorossai.ai.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight layer for upstream AI calls: while a request for a given
+ * {@link PromptKey} is in flight, identical requests attach to it instead of
+ * issuing their own call. The first caller (leader) performs the call; later
+ * callers (followers) receive its result or failure. Entries are removed as
+ * soon as the call completes, so nothing is cached beyond the flight itself.
+ *
+ * <p>A flight belongs to no single caller: it runs without any caller's
+ * deadline or client cancellation, and is aborted only once every caller that
+ * joined it has given up, so it lasts until the latest of their deadlines.
+ *
+ * <p>The coalescing ratio is {@code followers / (leaders + followers)} from the
+ * {@code dorossai.ai.coalescing.requests} counter.
+ */
+@Component
+@Slf4j
+public class AiRequestCoalescer {
+
+    private final ConcurrentMap<PromptKey, Flight<?>> inFlight = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final Counter leaders;
+    private final Counter followers;
+
+    public AiRequestCoalescer(MeterRegistry meterRegistry,
+                              @Value("${dorossai.ai.coalescing.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        this.leaders = requestCounter(meterRegistry, "leader");
+        this.followers = requestCounter(meterRegistry, "follower");
+        Gauge.builder("dorossai.ai.coalescing.in-flight", inFlight, ConcurrentMap::size)
+                .description("Distinct AI requests currently in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code call} unless an identical request is already in flight, in
+     * which case its outcome is shared. Every caller gets its own future, so
+     * cancelling one, or its deadline passing, does not affect the others.
+     * {@code call} runs with the calling thread's {@link AiRequestContext}
+     * minus its deadline and client cancellation.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> coalesce(PromptKey key, Supplier<CompletableFuture<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        AiRequestContext caller = AiRequestContext.current();
+        Flight<T> flight = new Flight<>();
+        Flight<T> existing;
+        while ((existing = (Flight<T>) inFlight.putIfAbsent(key, flight)) != null) {
+            if (existing.enter()) {
+                followers.increment();
+                log.debug("Joining in-flight AI request for {} ({})", key.getModel(), key.getMessagesHash());
+                return existing.follow(caller);
+            }
+            // Every caller of that flight gave up and it is being aborted
+            inFlight.remove(key, existing);
+        }
+
+        leaders.increment();
+        CompletableFuture<T> upstream;
+        try {
+            upstream = caller.withDeadline(null).withCancellation(flight.cancellation).call(call);
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        upstream.whenComplete((result, error) -> {
+            // Remove before completing, so callers reacting to the result start a new flight
+            inFlight.remove(key, flight);
+            if (error != null) {
+                flight.result.completeExceptionally(error);
+            } else {
+                flight.result.complete(result);
+            }
+        });
+        return flight.follow(caller);
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String role) {
+        return Counter.builder("dorossai.ai.coalescing.requests")
+                .description("AI requests by whether they issued the upstream call or joined one in flight")
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+
+    /**
+     * One upstream call and the number of callers still waiting for it.
+     */
+    private static final class Flight<T> {
+
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final AiCancellation cancellation = new AiCancellation();
+        private int callers = 1;
+
+        synchronized boolean enter() {
+            if (callers == 0) {
+                return false;
+            }
+            callers++;
+            return true;
+        }
+
+        /**
+         * The caller's own view of the result. It leaves the flight once it
+         * completes, which its deadline or client cancellation can do early.
+         */
+        CompletableFuture<T> follow(AiRequestContext caller) {
+            CompletableFuture<T> own = result.copy();
+            own.whenComplete((value, error) -> leave());
+            if (caller.getCancellation() != null) {
+                caller.getCancellation().attach(() -> own.cancel(false));
+            }
+            return own;
+        }
+
+        private void leave() {
+            boolean abandoned;
+            synchronized (this) {
+                abandoned = --callers == 0;
+            }
+            if (abandoned && !result.isDone()) {
+                cancellation.cancel();
+            }
+        }
+    }
+}
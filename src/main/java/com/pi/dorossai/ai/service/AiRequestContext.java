@@ -0,0 +1,132 @@
+package com.pi.dorossai.ai.service;
+
+import lombok.Value;
+import lombok.With;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+/**
+ * Per-request settings that influence how AI calls are scheduled, bound to
+ * the thread handling the HTTP request and carried over to the AI executor
+ * by {@link #propagate(Runnable)}.
+ */
+@Value
+@With
+public class AiRequestContext {
+
+    public static final AiRequestContext EMPTY = new AiRequestContext(null, null, null, null);
+
+    private static final ThreadLocal<AiRequestContext> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Priority the client asked for, or {@code null}. It can only lower the
+     * priority of an endpoint, never raise it.
+     */
+    AiPriority requestedPriority;
+
+    /**
+     * {@link System#nanoTime()} when the API request arrived, or {@code null}
+     * outside of one.
+     */
+    Long receivedAt;
+
+    /**
+     * {@link System#nanoTime()} by which the request must be answered, or
+     * {@code null} if it has none.
+     */
+    Long deadline;
+
+    /**
+     * Aborts the request's upstream calls once its client is gone, or
+     * {@code null}.
+     */
+    AiCancellation cancellation;
+
+    public static AiRequestContext current() {
+        AiRequestContext context = CURRENT.get();
+        return context != null ? context : EMPTY;
+    }
+
+    public static void set(AiRequestContext context) {
+        CURRENT.set(context);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Wraps a task so it runs with the context of the submitting thread;
+     * used as the AI executor's task decorator.
+     */
+    public static Runnable propagate(Runnable task) {
+        AiRequestContext captured = CURRENT.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> captured.call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs {@code call} with this context bound to the current thread.
+     */
+    public <T> T call(Supplier<T> call) {
+        AiRequestContext previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public AiPriority effectivePriority(AiPriority endpointPriority) {
+        return endpointPriority.lowest(requestedPriority);
+    }
+
+    /**
+     * @return this context with its deadline moved to at most
+     *         {@code timeout} after the request arrived (or now)
+     */
+    public AiRequestContext withTimeout(Duration timeout) {
+        long start = receivedAt != null ? receivedAt : System.nanoTime();
+        long candidate = start + timeout.toNanos();
+        return deadline != null && deadline - candidate <= 0 ? this : withDeadline(candidate);
+    }
+
+    /**
+     * @return nanoseconds left until the deadline, {@link Long#MAX_VALUE} if
+     *         there is none
+     */
+    public long remainingNanos() {
+        return deadline != null ? deadline - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    public boolean isCancelled() {
+        return cancellation != null && cancellation.isCancelled();
+    }
+
+    /**
+     * Fails fast instead of starting upstream work that can no longer be used.
+     *
+     * @throws CancellationException if the client has gone away
+     * @throws AiTimeoutException if the deadline has passed
+     */
+    public void checkActive() {
+        if (isCancelled()) {
+            throw new CancellationException("AI request abandoned, the client has gone away");
+        }
+        if (remainingNanos() <= 0) {
+            throw new AiTimeoutException("AI service request exceeded its deadline. Please try again later.", null);
+        }
+    }
+}
@@ -1,75 +1,501 @@
 package com.pi.dorossai.ai.service;
 
-import com.pi.dorossai.ai.config.AiServiceConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pi.dorossai.ai.cache.AiResponseCache;
+import com.pi.dorossai.ai.config.AiDeadlineProperties;
+import com.pi.dorossai.ai.config.AiPriorityProperties;
+import com.pi.dorossai.ai.dto.ChatCompletionResult;
+import com.pi.dorossai.ai.provider.AiProvider;
+import com.pi.dorossai.ai.provider.AiProviderRouter;
+import com.pi.dorossai.ai.resilience.AiBulkheads;
+import com.pi.dorossai.ai.resilience.AiCircuitBreaker;
+import com.pi.dorossai.ai.resilience.AiConcurrencyLimiter;
+import com.pi.dorossai.ai.resilience.AiRetryPolicy;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.ResourceAccessException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AiService {
-    
+
     @Qualifier("aiRestTemplate")
     private final RestTemplate restTemplate;
-    private final AiServiceConfig aiServiceConfig;
-    
-    private static final String GITHUB_ENDPOINT = "https://models.inference.ai.azure.com/chat/completions";
-    private static final String MODEL = "gpt-4o";
-    
-    public String callGithubInference(List<Map<String, String>> messages, double temperature) {
+    @Qualifier("aiTaskExecutor")
+    private final Executor aiTaskExecutor;
+    private final ObjectMapper objectMapper;
+    private final ChatCompletionDecoder chatCompletionDecoder;
+    private final AiRequestCoalescer aiRequestCoalescer;
+    private final AiResponseCache aiResponseCache;
+    private final AiHedging aiHedging;
+    private final AiCircuitBreaker aiCircuitBreaker;
+    private final AiConcurrencyLimiter aiConcurrencyLimiter;
+    private final AiBulkheads aiBulkheads;
+    private final AiPriorityProperties aiPriorityProperties;
+    private final AiRetryPolicy aiRetryPolicy;
+    private final AiDeadlineProperties aiDeadlineProperties;
+    private final AiProviderRouter aiProviderRouter;
+    private final AiModelSelector aiModelSelector;
+    private final AiTokenBudgets aiTokenBudgets;
+    private final AiMetrics aiMetrics;
+
+    private static final String SSE_DATA_PREFIX = "data:";
+    private static final String SSE_DONE = "[DONE]";
+
+    /**
+     * Non-blocking variant of {@link #callGithubInference(AiFeature, List, double)}.
+     * The call and its retries run on the AI executor; the returned future
+     * completes with the raw model content or the last failure, at the latest
+     * when the request's deadline passes.
+     */
+    public CompletableFuture<String> callGithubInferenceAsync(AiFeature feature, List<Map<String, String>> messages,
+                                                              double temperature) {
+        return callGithubInferenceAsync(request(feature, messages, temperature));
+    }
+
+    /**
+     * Non-blocking variant of {@link #callGithubInference(AiRequest)}. A prompt
+     * over its token budget is rejected right away, not through the future.
+     */
+    public CompletableFuture<String> callGithubInferenceAsync(AiRequest request) {
+        long start = System.nanoTime();
+        CompletableFuture<String> result;
+        try {
+            Integer maxTokens = aiTokenBudgets.check(request);
+            AiRequestContext context = scopedContext(request.getFeature());
+            AiModelTier tier = aiModelSelector.select(request);
+            result = withinDeadline(context, context.call(() -> cachedOrCoalesced(request, tier,
+                    () -> CompletableFuture.supplyAsync(() -> generate(request, tier, maxTokens), aiTaskExecutor))));
+        } catch (RuntimeException e) {
+            aiMetrics.recordCall(request.getFeature(), System.nanoTime() - start, e);
+            throw e;
+        }
+        result.whenComplete((content, error) -> aiMetrics.recordCall(request.getFeature(), System.nanoTime() - start, error));
+        return result;
+    }
+
+    /**
+     * Returns the model content for the given messages. Low-temperature calls
+     * may be answered from the response cache, and identical requests already
+     * in flight are joined rather than repeated. Upstream failures are retried
+     * according to {@link AiRetryPolicy}, and every attempt, backoff and wait
+     * for capacity is bounded by the request's deadline
+     * ({@link AiDeadlineProperties}). The model tier is chosen by
+     * {@link AiModelSelector}; prompts over the feature's token budget fail
+     * with {@link AiTokenBudgetExceededException} before anything is sent.
+     */
+    public String callGithubInference(AiFeature feature, List<Map<String, String>> messages, double temperature) {
+        return callGithubInference(request(feature, messages, temperature));
+    }
+
+    /**
+     * Like {@link #callGithubInference(AiFeature, List, double)}, with the
+     * further options of {@link AiRequest}.
+     */
+    public String callGithubInference(AiRequest request) {
+        long start = System.nanoTime();
+        RuntimeException failure = null;
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(aiServiceConfig.getGithubApiKey());
-            headers.set("Accept", "application/json");
-            
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("messages", messages);
-            payload.put("temperature", temperature);
-            payload.put("model", MODEL);
-            
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
-            
-            log.info("Sending request to GitHub AI endpoint");
-            ResponseEntity<Map> response = restTemplate.postForEntity(GITHUB_ENDPOINT, entity, Map.class);
-            
-            Map<String, Object> responseBody = response.getBody();
-            if (responseBody == null || !responseBody.containsKey("choices")) {
-                throw new RuntimeException("Invalid response format - missing choices");
+            Integer maxTokens = aiTokenBudgets.check(request);
+            AiRequestContext context = scopedContext(request.getFeature());
+            AiModelTier tier = aiModelSelector.select(request);
+            CompletableFuture<String> result = withinDeadline(context, context.call(() -> cachedOrCoalesced(request, tier,
+                    () -> CompletableFuture.completedFuture(generate(request, tier, maxTokens)))));
+            return result.join();
+        } catch (CompletionException e) {
+            failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+            throw failure;
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            aiMetrics.recordCall(request.getFeature(), System.nanoTime() - start, failure);
+        }
+    }
+
+    private static AiRequest request(AiFeature feature, List<Map<String, String>> messages, double temperature) {
+        return AiRequest.builder().feature(feature).messages(messages).temperature(temperature).build();
+    }
+
+    /**
+     * Calls the model of {@code tier} with retries, escalating to the large
+     * tier if the answer is unusable.
+     */
+    private Generation generate(AiRequest request, AiModelTier tier, Integer maxTokens) {
+        AiFeature feature = request.getFeature();
+        ChatCompletionResult result = aiRetryPolicy.execute(feature,
+                () -> hedgedCompletion(feature, tier, request.getMessages(), request.getTemperature(), maxTokens));
+        if (aiModelSelector.shouldEscalate(feature, tier, result.getContent())) {
+            return new Generation(aiRetryPolicy.execute(feature, () -> hedgedCompletion(feature, AiModelTier.LARGE,
+                    request.getMessages(), request.getTemperature(), maxTokens)), AiModelTier.LARGE);
+        }
+        return new Generation(result, tier);
+    }
+
+    /**
+     * The caller's context with its deadline shortened to the feature's
+     * timeout, counted from the arrival of the API request.
+     */
+    private AiRequestContext scopedContext(AiFeature feature) {
+        AiRequestContext context = AiRequestContext.current();
+        return aiDeadlineProperties.isEnabled() ? context.withTimeout(aiDeadlineProperties.timeoutFor(feature)) : context;
+    }
+
+    /**
+     * Fails {@code result} once the deadline passes. Only the caller's own
+     * future is affected: a coalesced call it joined keeps running for the
+     * other callers.
+     */
+    private static CompletableFuture<String> withinDeadline(AiRequestContext context, CompletableFuture<String> result) {
+        long remaining = context.remainingNanos();
+        if (remaining == Long.MAX_VALUE || result.isDone()) {
+            return result;
+        }
+        return result.orTimeout(Math.max(0, remaining), TimeUnit.NANOSECONDS).handle((content, error) -> {
+            if (error == null) {
+                return content;
             }
-            
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
-            if (choices.isEmpty()) {
-                throw new RuntimeException("Empty choices in response");
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof TimeoutException) {
+                throw new AiTimeoutException("AI service request exceeded its deadline. Please try again later.", null);
             }
-              @SuppressWarnings("unchecked")
-            Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-            return (String) message.get("content");
-            
-        } catch (ResourceAccessException e) {
-            if (e.getCause() != null && e.getCause().getMessage().contains("Read timed out")) {
-                log.error("AI service request timed out after waiting for response: {}", e.getMessage());
-                throw new RuntimeException("AI service request timed out. Please try again later.", e);
-            } else {
-                log.error("AI service connection failed: {}", e.getMessage());
-                throw new RuntimeException("Failed to connect to AI service: " + e.getMessage(), e);
+            throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+        });
+    }
+
+    /**
+     * Serves the request from the cache, joins an identical request in flight,
+     * or starts {@code call}. A small-tier request may also be answered by a
+     * cached large-tier answer. Answers are cached under the model that
+     * produced them, and only if they are complete and, for JSON features,
+     * valid JSON; a bad answer would otherwise be served for the whole TTL.
+     */
+    private CompletableFuture<String> cachedOrCoalesced(AiRequest request, AiModelTier tier,
+                                                        Supplier<CompletableFuture<Generation>> call) {
+        AiFeature feature = request.getFeature();
+        double temperature = request.getTemperature();
+        PromptKey key = promptKey(request, tier);
+        String cached = aiResponseCache.get(feature, temperature, key);
+        if (cached == null && tier != AiModelTier.LARGE) {
+            cached = aiResponseCache.get(feature, temperature, promptKey(request, AiModelTier.LARGE));
+        }
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return aiRequestCoalescer.coalesce(key, () -> call.get().thenApply(generation -> {
+            ChatCompletionResult result = generation.getResult();
+            if (isReusable(feature, result)) {
+                aiResponseCache.put(feature, temperature, promptKey(request, generation.getTier()), result.getContent());
+            }
+            return result.getContent();
+        }));
+    }
+
+    private PromptKey promptKey(AiRequest request, AiModelTier tier) {
+        return PromptKey.of(aiModelSelector.modelFor(tier), request.getTemperature(), request.getMessages());
+    }
+
+    private boolean isReusable(AiFeature feature, ChatCompletionResult result) {
+        if (result.isTruncated()) {
+            return false;
+        }
+        return feature == null || !feature.isJsonOutput() || aiModelSelector.isJson(result.getContent());
+    }
+
+    private ChatCompletionResult hedgedCompletion(AiFeature feature, AiModelTier tier, List<Map<String, String>> messages,
+                                                  double temperature, Integer maxTokens) {
+        return aiHedging.call(feature, () -> aiBulkheads.call(feature,
+                () -> complete(feature, tier, messages, temperature, maxTokens)));
+    }
+
+    /**
+     * Like {@link #callGithubInference(AiFeature, List, double)} but also returns the
+     * finish reason and token usage. The response body is decoded as a stream,
+     * so no intermediate object graph is built for the full response.
+     * Always performs its own upstream call, bypassing cache and coalescing,
+     * unless the circuit breaker is open. Waits for a slot of the concurrency
+     * limiter first, at the default priority. Uses the large model tier.
+     */
+    public ChatCompletionResult completeGithubInference(List<Map<String, String>> messages, double temperature) {
+        return complete(null, AiModelTier.LARGE, messages, temperature, null);
+    }
+
+    private ChatCompletionResult complete(AiFeature feature, AiModelTier tier, List<Map<String, String>> messages,
+                                          double temperature, Integer maxTokens) {
+        AiRequestContext.current().checkActive();
+        AiPriority priority = priorityFor(feature);
+        return aiCircuitBreaker.call(() -> aiConcurrencyLimiter.call(feature, priority, () -> {
+            long start = System.nanoTime();
+            ChatCompletionResult result = null;
+            RuntimeException failure = null;
+            try {
+                result = aiProviderRouter.call(feature,
+                        provider -> requestCompletion(feature, provider, tier, messages, temperature, maxTokens));
+                return result;
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            } finally {
+                // Failed attempts too, so timeouts show in the latency
+                aiMetrics.recordUpstream(feature, tier, System.nanoTime() - start, result, failure);
+            }
+        }));
+    }
+
+    private ChatCompletionResult requestCompletion(AiFeature feature, AiProvider provider, AiModelTier tier,
+                                                   List<Map<String, String>> messages, double temperature,
+                                                   Integer maxTokens) {
+        Map<String, Object> payload = buildPayload(provider, tier, messages, temperature);
+        if (maxTokens != null) {
+            payload.put("max_tokens", maxTokens);
+        }
+
+        try {
+            log.info("Sending request to {} AI endpoint ({} tier)", provider.getName(), tier);
+            long start = System.nanoTime();
+            ChatCompletionResult result = restTemplate.execute(provider.getUrl(), HttpMethod.POST,
+                    request -> {
+                        request.getHeaders().addAll(buildHeaders(provider, MediaType.APPLICATION_JSON));
+                        objectMapper.writeValue(request.getBody(), payload);
+                    },
+                    response -> {
+                        aiMetrics.recordFirstByte(feature, System.nanoTime() - start);
+                        return decodeCompletion(response);
+                    });
+
+            if (result == null) {
+                throw new RuntimeException("Empty response from AI service");
             }
+            if (result.isTruncated()) {
+                log.warn("AI completion was cut off at the token limit ({} completion tokens)", result.getCompletionTokens());
+            }
+            log.info("{} AI endpoint answered in {} ms, using {} prompt and {} completion tokens", provider.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    result.getPromptTokens(), result.getCompletionTokens());
+            return result;
+
+        } catch (ResourceAccessException e) {
+            throw translateAccessFailure(e);
+        } catch (RestClientResponseException e) {
+            throw translateErrorResponse(e);
         } catch (Exception e) {
             log.error("AI service call failed: {}", e.getMessage());
             throw new RuntimeException("Failed to call AI service: " + e.getMessage(), e);
         }
     }
+
+    private ChatCompletionResult decodeCompletion(ClientHttpResponse response) throws IOException {
+        try {
+            return chatCompletionDecoder.decode(response.getBody());
+        } catch (JsonProcessingException e) {
+            // Report malformed bodies like the message converters do, not as an I/O failure
+            throw new HttpMessageNotReadableException("Could not decode AI response: " + e.getOriginalMessage(), e, response);
+        }
+    }
+
+    /**
+     * Async variant of {@link #streamGithubInference(AiFeature, List, double, Consumer)}.
+     * Streams are not retried, since tokens may already have reached the client.
+     */
+    public CompletableFuture<String> streamGithubInferenceAsync(AiFeature feature, List<Map<String, String>> messages,
+                                                                double temperature, Consumer<String> onToken) {
+        return CompletableFuture.supplyAsync(
+                () -> streamGithubInference(feature, messages, temperature, onToken),
+                aiTaskExecutor);
+    }
+
+    /**
+     * Requests a streamed chat completion ({@code stream=true}) and hands every
+     * content delta to {@code onToken} as soon as it arrives.
+     * Time to first token and total stream duration are recorded per feature.
+     * If {@code onToken} throws (e.g. the client went away) the upstream read is
+     * abandoned and the connection closed. Streams use the large model tier,
+     * since a partly delivered answer cannot be escalated. Like other calls,
+     * a stream runs at the feature's priority and ends with
+     * {@link AiTimeoutException} once the feature's deadline has passed.
+     *
+     * @return the concatenated content of the completion
+     */
+    public String streamGithubInference(AiFeature feature, List<Map<String, String>> messages, double temperature,
+                                        Consumer<String> onToken) {
+        AiRequestContext context = scopedContext(feature);
+        return context.call(() -> {
+            context.checkActive();
+            AiPriority priority = priorityFor(feature);
+            return aiCircuitBreaker.callIgnoringDuration(
+                    () -> aiConcurrencyLimiter.callIgnoringDuration(priority,
+                            () -> aiProviderRouter.callOnce(feature, provider -> requestStream(feature, provider, messages, temperature, onToken))));
+        });
+    }
+
+    private String requestStream(AiFeature feature, AiProvider provider, List<Map<String, String>> messages,
+                                 double temperature, Consumer<String> onToken) {
+        Map<String, Object> payload = buildPayload(provider, AiModelTier.LARGE, messages, temperature);
+        payload.put("stream", true);
+        long start = System.nanoTime();
+
+        try {
+            log.info("Sending streaming request to {} AI endpoint", provider.getName());
+            String content = restTemplate.execute(provider.getUrl(), HttpMethod.POST,
+                    request -> {
+                        request.getHeaders().addAll(buildHeaders(provider, MediaType.TEXT_EVENT_STREAM));
+                        objectMapper.writeValue(request.getBody(), payload);
+                    },
+                    response -> readEventStream(feature, response.getBody(), onToken, start));
+
+            aiMetrics.recordStream(feature, System.nanoTime() - start);
+            return content;
+
+        } catch (ResourceAccessException e) {
+            throw translateAccessFailure(e);
+        } catch (RestClientResponseException e) {
+            throw translateErrorResponse(e);
+        } catch (AiTimeoutException | CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("AI streaming call failed: {}", e.getMessage());
+            throw new RuntimeException("Failed to call AI service: " + e.getMessage(), e);
+        }
+    }
+
+    private String readEventStream(AiFeature feature, InputStream body, Consumer<String> onToken, long start)
+            throws IOException {
+        StringBuilder content = new StringBuilder();
+        boolean firstToken = true;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.startsWith(SSE_DATA_PREFIX)) {
+                continue;
+            }
+            String data = line.substring(SSE_DATA_PREFIX.length()).trim();
+            if (SSE_DONE.equals(data)) {
+                break;
+            }
+            // Read timeouts only catch a stalled stream, not a slow one running past the deadline
+            AiRequestContext.current().checkActive();
+            JsonNode delta = objectMapper.readTree(data).path("choices").path(0).path("delta").path("content");
+            if (!delta.isTextual() || delta.asText().isEmpty()) {
+                continue;
+            }
+            if (firstToken) {
+                firstToken = false;
+                aiMetrics.recordFirstToken(feature, System.nanoTime() - start);
+            }
+            String token = delta.asText();
+            content.append(token);
+            onToken.accept(token);
+        }
+        return content.toString();
+    }
+
+    /**
+     * The feature's priority class, lowered if the client asked for that.
+     */
+    private AiPriority priorityFor(AiFeature feature) {
+        return AiRequestContext.current().effectivePriority(aiPriorityProperties.priorityFor(feature));
+    }
+
+    private HttpHeaders buildHeaders(AiProvider provider, MediaType accept) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(provider.getApiKey());
+        headers.setAccept(List.of(accept));
+        return headers;
+    }
+
+    private Map<String, Object> buildPayload(AiProvider provider, AiModelTier tier, List<Map<String, String>> messages,
+                                             double temperature) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("messages", messages);
+        payload.put("temperature", temperature);
+        payload.put("model", provider.modelFor(tier, aiModelSelector.modelFor(tier)));
+        return payload;
+    }
+
+    private RuntimeException translateAccessFailure(ResourceAccessException e) {
+        AiCallHandle handle = AiCallHandle.current();
+        if (handle != null && handle.isCancelled() || AiRequestContext.current().isCancelled()) {
+            // Aborted on purpose, e.g. the losing attempt of a hedged call or the client went away
+            log.debug("AI service request cancelled: {}", e.getMessage());
+            CancellationException cancelled = new CancellationException("AI service request cancelled");
+            cancelled.initCause(e);
+            return cancelled;
+        }
+        if (isReadTimeout(e.getCause())) {
+            log.error("AI service request timed out after waiting for response: {}", e.getMessage());
+            return new AiTimeoutException("AI service request timed out. Please try again later.", e);
+        }
+        log.error("AI service connection failed: {}", e.getMessage());
+        return new AiServiceException("Failed to connect to AI service: " + e.getMessage(), e);
+    }
+
+    /**
+     * A response that did not arrive in time, as opposed to a connection that
+     * could not be made: socket read timeouts of the Apache client, and
+     * request timeouts of the JDK client used for HTTP/2.
+     */
+    private static boolean isReadTimeout(Throwable cause) {
+        return cause instanceof SocketTimeoutException
+                || cause instanceof HttpTimeoutException && !(cause instanceof HttpConnectTimeoutException);
+    }
+
+    /**
+     * Server errors and throttling mean the endpoint is unhealthy; other
+     * client errors are a problem with our request and stay plain failures.
+     */
+    private RuntimeException translateErrorResponse(RestClientResponseException e) {
+        HttpStatusCode status = e.getStatusCode();
+        if (status.is5xxServerError() || status.value() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+            log.error("AI service responded with {}", status);
+            return new AiServiceException("AI service responded with " + status, e);
+        }
+        log.error("AI service rejected the request with {}: {}", status, e.getMessage());
+        return new RuntimeException("Failed to call AI service: " + e.getMessage(), e);
+    }
+
+    /**
+     * A completion and the tier whose model produced it, which differs from
+     * the requested tier after an escalation.
+     */
+    @Value
+    private static class Generation {
+        ChatCompletionResult result;
+        AiModelTier tier;
+    }
 }
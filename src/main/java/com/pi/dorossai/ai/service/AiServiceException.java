@@ -0,0 +1,17 @@
+package com.pi.dorossai.ai.service;
+
+/**
+ * The upstream AI service could not produce a response: it was unreachable,
+ * timed out, answered with a server error or is being shed by the circuit
+ * breaker. Unlike a malformed completion, retrying later may help.
+ */
+public class AiServiceException extends RuntimeException {
+
+    public AiServiceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    protected AiServiceException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, true, writableStackTrace);
+    }
+}
@@ -0,0 +1,90 @@
+package com.pi.dorossai.ai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Bridges a streamed AI generation to a {@code text/event-stream} response.
+ * Emits one event per content delta or parsed item, then a single {@code done}
+ * event carrying the final response object, or an {@code error} event.
+ */
+@Component
+@Slf4j
+public class AiStreamEmitter {
+
+    @Value("${dorossai.ai.stream.timeout:120000}")
+    private long streamTimeout;
+
+    /**
+     * @param generation starts the generation, given the consumer that forwards
+     *                   each token to the client, and returns the final result
+     */
+    public <T> SseEmitter stream(Function<Consumer<String>, CompletableFuture<T>> generation) {
+        return stream("token", generation.compose(onItem -> token -> onItem.accept(Map.of("text", token))));
+    }
+
+    /**
+     * Emits one {@code eventName} event per item the generation produces, e.g.
+     * each quiz question as soon as it has been parsed from the stream.
+     *
+     * @param generation starts the generation, given the consumer that forwards
+     *                   each item to the client, and returns the final result
+     */
+    public <I, T> SseEmitter stream(String eventName, Function<Consumer<I>, CompletableFuture<T>> generation) {
+        SseEmitter emitter = new SseEmitter(streamTimeout);
+
+        generation.apply(item -> send(emitter, eventName, item))
+                .whenComplete((result, error) -> {
+                    if (error == null) {
+                        complete(emitter, result);
+                    } else {
+                        fail(emitter, error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error);
+                    }
+                });
+        return emitter;
+    }
+
+    private void complete(SseEmitter emitter, Object result) {
+        try {
+            emitter.send(SseEmitter.event().name("done").data(result, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            log.debug("Client disconnected before the final stream event: {}", e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void fail(SseEmitter emitter, Throwable error) {
+        log.error("Streaming generation failed: {}", error.getMessage());
+        try {
+            emitter.send(SseEmitter.event().name("error")
+                    .data(Map.of("message", "AI service is temporarily unavailable. Please try again later."),
+                            MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(error);
+        }
+    }
+
+    private void send(SseEmitter emitter, String name, Object data) {
+        try {
+            // JSON payloads keep newlines inside tokens from breaking SSE framing
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            // Aborts the upstream read so a disconnected client stops the generation
+            throw new UncheckedIOException("Client disconnected from stream", e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.pi.dorossai.ai.service;
+
+/**
+ * The AI service accepted the request but did not answer in time.
+ */
+public class AiTimeoutException extends AiServiceException {
+
+    public AiTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,31 @@
+package com.pi.dorossai.ai.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown without calling the AI endpoint when a prompt exceeds its feature's
+ * input token budget. Not an {@link AiServiceException}: the input is at
+ * fault, so retrying cannot help.
+ */
+@ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+public class AiTokenBudgetExceededException extends RuntimeException {
+
+    private final int tokens;
+    private final int budget;
+
+    public AiTokenBudgetExceededException(AiFeature feature, int tokens, int budget) {
+        super("Input is too long for " + (feature != null ? feature.getTag() : "this request") + ": " + tokens
+                + " tokens, at most " + budget + " are allowed", null, true, false);
+        this.tokens = tokens;
+        this.budget = budget;
+    }
+
+    public int getTokens() {
+        return tokens;
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+}
@@ -0,0 +1,146 @@
+package com.pi.dorossai.ai.service;
+
+import com.pi.dorossai.ai.config.AiTokenBudgetProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Enforces the per-feature token budgets of {@link AiTokenBudgetProperties}.
+ *
+ * <p>Every prompt is counted before it is sent and rejected with
+ * {@link AiTokenBudgetExceededException} if it is over the feature's input
+ * budget; the output budget becomes the call's {@code max_tokens}. Features
+ * that embed user text can fit it to the budget first with
+ * {@link #fit(AiFeature, String, Function)} or {@link #split(AiFeature, String, Function)},
+ * which truncate or chunk it according to the feature's {@code overflow}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AiTokenBudgets {
+
+    private final AiTokenBudgetProperties properties;
+    private final AiTokenizer tokenizer;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @return the {@code max_tokens} to send with the request, or
+     *         {@code null} if budgets are disabled
+     * @throws AiTokenBudgetExceededException if the prompt is over budget
+     */
+    public Integer check(AiRequest request) {
+        if (!properties.isEnabled()) {
+            return request.getMaxOutputTokens();
+        }
+        AiFeature feature = request.getFeature();
+        AiTokenBudgetProperties.Budget budget = properties.budgetFor(feature);
+        int tokens = tokenizer.count(request.getMessages());
+        DistributionSummary.builder("dorossai.ai.tokens.prompt")
+                .description("Locally counted prompt tokens of AI calls")
+                .baseUnit("tokens")
+                .tag("feature", feature.getTag())
+                .register(meterRegistry)
+                .record(tokens);
+        if (tokens > budget.getMaxInputTokens()) {
+            overflowCounter(feature, "rejected").increment();
+            throw new AiTokenBudgetExceededException(feature, tokens, budget.getMaxInputTokens());
+        }
+        Integer requested = request.getMaxOutputTokens();
+        return requested != null ? Math.min(requested, budget.getMaxOutputTokens()) : budget.getMaxOutputTokens();
+    }
+
+    /**
+     * Builds a single-message prompt around {@code text}, truncating the
+     * text if the prompt would not fit the feature's input budget.
+     *
+     * @param prompt builds the prompt content for a given text
+     * @throws AiTokenBudgetExceededException if the text does not fit and the
+     *         feature's overflow is {@code reject}
+     */
+    public String fit(AiFeature feature, String text, Function<String, String> prompt) {
+        List<String> parts = split(feature, text, prompt);
+        return prompt.apply(parts.get(0));
+    }
+
+    /**
+     * Splits {@code text} into parts that each fit the prompt built by
+     * {@code prompt} within the feature's input budget. Only features whose
+     * overflow is {@code chunk} get more than one part; for the others the
+     * text is truncated.
+     *
+     * @throws AiTokenBudgetExceededException if the text does not fit and the
+     *         feature's overflow is {@code reject}
+     */
+    public List<String> split(AiFeature feature, String text, Function<String, String> prompt) {
+        return split(feature, text, prompt, 0);
+    }
+
+    /**
+     * Like {@link #split(AiFeature, String, Function)}, for the given round
+     * of condensing a text: the summaries of the parts of round {@code n}
+     * are split in round {@code n + 1}.
+     *
+     * @throws AiTokenBudgetExceededException if the text does not fit and the
+     *         feature's overflow is {@code reject}, or chunking it would take
+     *         more than {@code max-chunks} parts or {@code max-chunk-rounds}
+     *         rounds
+     */
+    public List<String> split(AiFeature feature, String text, Function<String, String> prompt, int round) {
+        if (!properties.isEnabled()) {
+            return List.of(text);
+        }
+        AiTokenBudgetProperties.Budget budget = properties.budgetFor(feature);
+        int reserved = promptTokens(prompt.apply(""));
+        int available = budget.getMaxInputTokens() - reserved;
+        int tokens = tokenizer.count(text);
+        if (tokens <= available) {
+            return List.of(text);
+        }
+        switch (budget.getOverflow()) {
+            case REJECT -> {
+                overflowCounter(feature, "rejected").increment();
+                throw new AiTokenBudgetExceededException(feature, reserved + tokens, budget.getMaxInputTokens());
+            }
+            case CHUNK -> {
+                if (round > properties.getMaxChunkRounds()) {
+                    overflowCounter(feature, "rejected").increment();
+                    throw new AiTokenBudgetExceededException(feature, reserved + tokens, budget.getMaxInputTokens());
+                }
+                List<String> parts = tokenizer.split(text, available);
+                if (parts.size() > properties.getMaxChunks()) {
+                    overflowCounter(feature, "rejected").increment();
+                    throw new AiTokenBudgetExceededException(feature, tokens,
+                            properties.getMaxChunks() * available);
+                }
+                overflowCounter(feature, "chunked").increment();
+                log.info("Splitting {} input of {} tokens into {} parts", feature.getTag(), tokens, parts.size());
+                return parts;
+            }
+            default -> {
+                overflowCounter(feature, "truncated").increment();
+                log.warn("Truncating {} input from {} to {} tokens", feature.getTag(), tokens, available);
+                return List.of(tokenizer.truncate(text, available));
+            }
+        }
+    }
+
+    private int promptTokens(String content) {
+        return tokenizer.count(List.of(Map.of("role", "user", "content", content)));
+    }
+
+    private Counter overflowCounter(AiFeature feature, String action) {
+        return Counter.builder("dorossai.ai.tokens.overflows")
+                .description("AI inputs over their token budget by what was done about it")
+                .tag("feature", feature.getTag())
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+}
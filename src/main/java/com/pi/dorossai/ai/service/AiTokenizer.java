@@ -0,0 +1,77 @@
+package com.pi.dorossai.ai.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.pi.dorossai.ai.config.AiTokenBudgetProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts and cuts text in tokens of the target model's BPE encoding, so
+ * prompt sizes are known before anything is sent.
+ */
+@Component
+public class AiTokenizer {
+
+    /**
+     * Tokens the chat format adds around every message and to prime the reply.
+     */
+    private static final int TOKENS_PER_MESSAGE = 3;
+    private static final int TOKENS_PER_REPLY = 3;
+
+    private final Encoding encoding;
+
+    public AiTokenizer(AiTokenBudgetProperties properties) {
+        this.encoding = Encodings.newLazyEncodingRegistry().getEncoding(properties.getEncoding());
+    }
+
+    public int count(String text) {
+        return text == null || text.isEmpty() ? 0 : encoding.countTokens(text);
+    }
+
+    /**
+     * @return tokens of a chat prompt made of {@code messages}
+     */
+    public int count(List<Map<String, String>> messages) {
+        int tokens = TOKENS_PER_REPLY;
+        for (Map<String, String> message : messages) {
+            tokens += TOKENS_PER_MESSAGE + count(message.get("role")) + count(message.get("content"));
+        }
+        return tokens;
+    }
+
+    /**
+     * @return the longest prefix of {@code text} of at most {@code maxTokens}
+     *         tokens, cut at a character boundary
+     */
+    public String truncate(String text, int maxTokens) {
+        if (maxTokens <= 0) {
+            return "";
+        }
+        EncodingResult result = encoding.encode(text, maxTokens);
+        return result.isTruncated() ? text.substring(0, result.getLastProcessedCharacterIndex() + 1) : text;
+    }
+
+    /**
+     * @return consecutive parts of {@code text} of at most {@code maxTokens}
+     *         tokens each
+     */
+    public List<String> split(String text, int maxTokens) {
+        List<String> parts = new ArrayList<>();
+        String rest = text;
+        while (!rest.isEmpty()) {
+            String part = truncate(rest, Math.max(1, maxTokens));
+            if (part.isEmpty()) {
+                // A single character longer than the budget; never loop forever
+                part = rest.substring(0, 1);
+            }
+            parts.add(part);
+            rest = rest.substring(part.length());
+        }
+        return parts;
+    }
+}
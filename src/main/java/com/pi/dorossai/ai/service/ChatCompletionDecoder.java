@@ -0,0 +1,128 @@
+package com.pi.dorossai.ai.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pi.dorossai.ai.dto.ChatCompletionResult;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming decoder for chat-completion responses. Walks the token stream once
+ * and keeps only the first choice's content and finish_reason plus the usage
+ * counts; every other field (ids, filter results, logprobs, further choices)
+ * is skipped without being materialized.
+ */
+@Component
+public class ChatCompletionDecoder {
+
+    private final JsonFactory jsonFactory;
+
+    public ChatCompletionDecoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public ChatCompletionResult decode(InputStream body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return decode(parser);
+        }
+    }
+
+    public ChatCompletionResult decode(String body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return decode(parser);
+        }
+    }
+
+    private ChatCompletionResult decode(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Invalid response format - expected a JSON object");
+        }
+        ChatCompletionResult result = new ChatCompletionResult();
+        boolean hasChoices = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+                hasChoices = readChoices(parser, result);
+            } else if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                readUsage(parser, result);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (!hasChoices) {
+            throw new JsonParseException(parser, "Invalid response format - missing choices");
+        }
+        return result;
+    }
+
+    /**
+     * @return whether the array contained at least one choice
+     */
+    private boolean readChoices(JsonParser parser, ChatCompletionResult result) throws IOException {
+        boolean first = true;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new JsonParseException(parser, "Invalid response format - truncated choices");
+            }
+            if (first && token == JsonToken.START_OBJECT) {
+                readChoice(parser, result);
+                first = false;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return !first;
+    }
+
+    private void readChoice(JsonParser parser, ChatCompletionResult result) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("message".equals(field) && value == JsonToken.START_OBJECT) {
+                readMessage(parser, result);
+            } else if ("finish_reason".equals(field) && value == JsonToken.VALUE_STRING) {
+                result.setFinishReason(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readMessage(JsonParser parser, ChatCompletionResult result) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value == JsonToken.VALUE_STRING) {
+                result.setContent(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readUsage(JsonParser parser, ChatCompletionResult result) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value != JsonToken.VALUE_NUMBER_INT) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "prompt_tokens" -> result.setPromptTokens(parser.getIntValue());
+                case "completion_tokens" -> result.setCompletionTokens(parser.getIntValue());
+                case "total_tokens" -> result.setTotalTokens(parser.getIntValue());
+                default -> { }
+            }
+        }
+    }
+}
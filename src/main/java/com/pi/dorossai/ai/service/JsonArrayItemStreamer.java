@@ -0,0 +1,140 @@
+package com.pi.dorossai.ai.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Incremental parser for a streamed JSON completion of the form
+ * {@code {"<arrayField>": [{...}, {...}], ...}}. Text chunks are fed as they
+ * arrive and every object of the array is handed to the consumer as soon as
+ * its closing brace has been read, long before the document is complete.
+ *
+ * <p>Anything before the first '{' (such as a markdown code fence) and after
+ * the root object is ignored. On malformed input the streamer stops emitting;
+ * callers are expected to parse the full text afterwards as usual.
+ *
+ * <p>Not thread-safe: one instance per streamed completion.
+ */
+@Slf4j
+public class JsonArrayItemStreamer {
+
+    private final ObjectMapper objectMapper;
+    private final String arrayField;
+    private final Consumer<JsonNode> onItem;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private boolean started;
+    private boolean finished;
+    private int depth;
+    private boolean arrayFieldPending;
+    private int arrayDepth = -1;
+    private TokenBuffer item;
+    private int itemDepth;
+    private int emitted;
+
+    public JsonArrayItemStreamer(ObjectMapper objectMapper, String arrayField, Consumer<JsonNode> onItem) {
+        this.objectMapper = objectMapper;
+        this.arrayField = arrayField;
+        this.onItem = onItem;
+        try {
+            this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create non-blocking JSON parser", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Feeds the next chunk of completion text.
+     */
+    public void feed(String chunk) {
+        if (finished || chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        if (!started) {
+            int start = chunk.indexOf('{');
+            if (start < 0) {
+                return;
+            }
+            started = true;
+            chunk = chunk.substring(start);
+        }
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            drain();
+        } catch (IOException e) {
+            log.debug("Stopped incremental parsing of '{}' after {} items: {}", arrayField, emitted, e.getMessage());
+            finished = true;
+        }
+    }
+
+    /**
+     * @return number of array items emitted so far
+     */
+    public int getEmitted() {
+        return emitted;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while (!finished && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (item != null) {
+                capture(token);
+            } else {
+                navigate(token);
+            }
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+                if (depth == 0) {
+                    // Root object closed; ignore trailing fences or commentary
+                    finished = true;
+                }
+            }
+        }
+    }
+
+    private void navigate(JsonToken token) throws IOException {
+        if (token == JsonToken.FIELD_NAME) {
+            arrayFieldPending = depth == 1 && arrayField.equals(parser.currentName());
+        } else if (token == JsonToken.START_ARRAY && arrayFieldPending) {
+            arrayFieldPending = false;
+            arrayDepth = depth + 1;
+        } else if (token == JsonToken.END_ARRAY && depth == arrayDepth) {
+            arrayDepth = -1;
+        } else if (token == JsonToken.START_OBJECT && depth == arrayDepth) {
+            item = new TokenBuffer(parser);
+            itemDepth = 0;
+            capture(token);
+        } else {
+            arrayFieldPending = false;
+        }
+    }
+
+    private void capture(JsonToken token) throws IOException {
+        item.copyCurrentEvent(parser);
+        if (token.isStructStart()) {
+            itemDepth++;
+        } else if (token.isStructEnd() && --itemDepth == 0) {
+            try (JsonParser itemParser = item.asParser(objectMapper)) {
+                JsonNode node = objectMapper.readTree(itemParser);
+                emitted++;
+                onItem.accept(node);
+            } finally {
+                item = null;
+            }
+        }
+    }
+}
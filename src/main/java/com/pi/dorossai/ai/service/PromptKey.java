@@ -0,0 +1,54 @@
+package com.pi.dorossai.ai.service;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Identity of an AI request: model, temperature and a SHA-256 hash over a
+ * canonical form of the messages (entries sorted by key), so two requests
+ * that would produce the same upstream payload get equal keys.
+ */
+@Value
+public class PromptKey {
+
+    String model;
+    double temperature;
+    String messagesHash;
+
+    public static PromptKey of(String model, double temperature, List<Map<String, String>> messages) {
+        MessageDigest digest = sha256();
+        for (Map<String, String> message : messages) {
+            for (Map.Entry<String, String> entry : new TreeMap<>(message).entrySet()) {
+                update(digest, entry.getKey());
+                update(digest, entry.getValue());
+            }
+            // Message separator, distinct from the field separator
+            digest.update((byte) 1);
+        }
+        return new PromptKey(model, temperature, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 2);
+        } else {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
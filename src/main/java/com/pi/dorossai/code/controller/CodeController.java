@@ -1,5 +1,6 @@
 package com.pi.dorossai.code.controller;
 
+import com.pi.dorossai.ai.service.AiStreamEmitter;
 import com.pi.dorossai.code.dto.CodeExplanationRequest;
 import com.pi.dorossai.code.dto.CodeExplanationResponse;
 import com.pi.dorossai.code.service.CodeService;
@@ -14,8 +15,12 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api")
@@ -24,7 +29,10 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "Code Analysis", description = "Code explanation and analysis services")
 public class CodeController {
     
-    private final CodeService codeService;    @PostMapping("/explain-code")
+    private final CodeService codeService;
+    private final AiStreamEmitter aiStreamEmitter;
+
+    @PostMapping("/explain-code")
     @Operation(
         summary = "Explain Code", 
         description = "Analyze and explain code functionality at different detail levels. Supports multiple programming languages and provides detailed explanations of code logic, structure, and best practices."
@@ -116,7 +124,7 @@ public class CodeController {
             )
         )
     })
-    public ResponseEntity<CodeExplanationResponse> explainCode(
+    public CompletableFuture<ResponseEntity<CodeExplanationResponse>> explainCode(
         @io.swagger.v3.oas.annotations.parameters.RequestBody(
             description = "Code explanation request with source code and analysis parameters",
             required = true,
@@ -160,7 +168,17 @@ public class CodeController {
         @Valid @RequestBody CodeExplanationRequest request) {
         log.info("Received request to explain {} code at {} level", request.getLanguage(), request.getDetailLevel());
         
-        CodeExplanationResponse response = codeService.explainCode(request);
-        return ResponseEntity.ok(response);
+        return codeService.explainCodeAsync(request)
+            .thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping(value = "/explain-code/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Explain Code (Streaming)",
+        description = "Stream the code explanation as Server-Sent Events while it is generated. Each `token` event carries a chunk of text, followed by a `done` event with the complete explanation response, or an `error` event."
+    )
+    public SseEmitter explainCodeStream(@Valid @RequestBody CodeExplanationRequest request) {
+        log.info("Received request to stream explanation of {} code", request.getLanguage());
+        return aiStreamEmitter.stream(onToken -> codeService.explainCodeStream(request, onToken));
     }
 }
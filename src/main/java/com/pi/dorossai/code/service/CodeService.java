@@ -1,65 +1,92 @@
 package com.pi.dorossai.code.service;
 
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiMetrics;
 import com.pi.dorossai.ai.service.AiService;
+import com.pi.dorossai.ai.service.AiServiceException;
+import com.pi.dorossai.ai.service.AiTimeoutException;
 import com.pi.dorossai.code.dto.CodeExplanationRequest;
 import com.pi.dorossai.code.dto.CodeExplanationResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.ResourceAccessException;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CodeService {
     
-    private final AiService aiService;    @Retryable(
-        value = { Exception.class },
-        exclude = { ResourceAccessException.class },
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 1000)
-    )
-    public CodeExplanationResponse explainCode(CodeExplanationRequest request) {
-        log.info("Explaining {} code at {} level", request.getLanguage(), request.getDetailLevel());
+    private final AiService aiService;
+    private final AiMetrics aiMetrics;
+
+    /**
+     * Explains the code; the upstream call and its retries run on the AI
+     * executor. A timeout resolves to a short apology instead of an error,
+     * and endpoint failures are passed on as {@link AiServiceException}.
+     */
+    public CompletableFuture<CodeExplanationResponse> explainCodeAsync(CodeExplanationRequest request) {
+        log.info("Explaining {} code at {} level (async)", request.getLanguage(), request.getDetailLevel());
         
-        try {
-            String prompt = buildPrompt(request);
-            
-            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            
-            String explanation = aiService.callGithubInference(List.of(message), 0.2);
-            
-            return new CodeExplanationResponse(
+        return aiService.callGithubInferenceAsync(AiFeature.CODE_EXPLANATION, buildMessages(buildPrompt(request)), 0.2)
+            .thenApply(explanation -> new CodeExplanationResponse(
                 explanation,
                 request.getLanguage(),
                 request.getDetailLevel()
-            );        } catch (ResourceAccessException e) {
-            if (e.getCause() != null && e.getCause().getMessage().contains("Read timed out")) {
-                log.error("Code explanation timed out: {}", e.getMessage());
-                return new CodeExplanationResponse(
-                    String.format("I apologize, but the code explanation service is currently experiencing high load and timed out. " +
-                            "Here's a basic analysis of your %s code:\n\n" +
-                            "The code appears to be written in %s. To get a detailed explanation, please try again in a moment when the service load is lower.",
-                            request.getLanguage(), request.getLanguage()),
-                    request.getLanguage(),
-                    request.getDetailLevel()
-                );
-            } else {
-                log.error("Code explanation connection failed: {}", e.getMessage());
-                throw new RuntimeException("Failed to connect to AI service: " + e.getMessage(), e);
-            }
-        } catch (Exception e) {
-            log.error("Code explanation failed: {}", e.getMessage());
-            throw new RuntimeException("Failed to explain code: " + e.getMessage(), e);
-        }
+            ))
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof AiTimeoutException) {
+                    log.error("Code explanation timed out: {}", cause.getMessage());
+                    aiMetrics.fallback(AiFeature.CODE_EXPLANATION, "timeout");
+                    return createTimeoutFallbackResponse(request);
+                }
+                if (cause instanceof AiServiceException aiFailure) {
+                    log.error("Code explanation connection failed: {}", cause.getMessage());
+                    throw aiFailure;
+                }
+                log.error("Code explanation failed: {}", cause.getMessage());
+                throw new RuntimeException("Failed to explain code: " + cause.getMessage(), cause);
+            });
+    }
+    
+    /**
+     * Streams the explanation, passing each token to {@code onToken} as the
+     * model produces it. The future completes with the assembled response.
+     */
+    public CompletableFuture<CodeExplanationResponse> explainCodeStream(CodeExplanationRequest request, Consumer<String> onToken) {
+        log.info("Streaming explanation of {} code at {} level", request.getLanguage(), request.getDetailLevel());
+        
+        return aiService.streamGithubInferenceAsync(AiFeature.CODE_EXPLANATION, buildMessages(buildPrompt(request)), 0.2, onToken)
+            .thenApply(explanation -> new CodeExplanationResponse(
+                explanation,
+                request.getLanguage(),
+                request.getDetailLevel()
+            ));
+    }
+    
+    private CodeExplanationResponse createTimeoutFallbackResponse(CodeExplanationRequest request) {
+        return new CodeExplanationResponse(
+            String.format("I apologize, but the code explanation service is currently experiencing high load and timed out. " +
+                    "Here's a basic analysis of your %s code:\n\n" +
+                    "The code appears to be written in %s. To get a detailed explanation, please try again in a moment when the service load is lower.",
+                    request.getLanguage(), request.getLanguage()),
+            request.getLanguage(),
+            request.getDetailLevel()
+        );
+    }
+    
+    private List<Map<String, String>> buildMessages(String prompt) {
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", prompt);
+        return List.of(message);
     }
     
     private String buildPrompt(CodeExplanationRequest request) {
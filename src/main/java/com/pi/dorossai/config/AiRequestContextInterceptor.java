@@ -0,0 +1,118 @@
+package com.pi.dorossai.config;
+
+import com.pi.dorossai.ai.config.AiDeadlineProperties;
+import com.pi.dorossai.ai.config.AiPriorityProperties;
+import com.pi.dorossai.ai.service.AiCancellation;
+import com.pi.dorossai.ai.service.AiPriority;
+import com.pi.dorossai.ai.service.AiRequestContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Binds the {@link AiRequestContext} of an API request from its headers. For
+ * async requests the context's cancellation fires once the client
+ * disconnects or the async request times out.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AiRequestContextInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String CONTEXT_ATTRIBUTE = AiRequestContext.class.getName();
+
+    private final AiPriorityProperties priorityProperties;
+    private final AiDeadlineProperties deadlineProperties;
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull Object handler) {
+        if (request.getAttribute(CONTEXT_ATTRIBUTE) instanceof AiRequestContext dispatched) {
+            // Async dispatch of a request that already has its context
+            AiRequestContext.set(dispatched);
+            return true;
+        }
+        String header = request.getHeader(priorityProperties.getHeader());
+        AiPriority requested = AiPriority.parse(header);
+        if (header != null && requested == null) {
+            log.debug("Ignoring unknown {} value: {}", priorityProperties.getHeader(), header);
+        }
+        AiRequestContext context = AiRequestContext.EMPTY
+                .withRequestedPriority(requested)
+                .withReceivedAt(System.nanoTime())
+                .withCancellation(new AiCancellation());
+        if (deadlineProperties.isEnabled()) {
+            Duration timeout = requestedTimeout(request);
+            if (timeout != null) {
+                context = context.withTimeout(timeout);
+            }
+        }
+        request.setAttribute(CONTEXT_ATTRIBUTE, context);
+        AiRequestContext.set(context);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull Object handler) {
+        AiCancellation cancellation = AiRequestContext.current().getCancellation();
+        if (cancellation != null && request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new CancellingListener(cancellation));
+        }
+        AiRequestContext.clear();
+    }
+
+    @Override
+    public void afterCompletion(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull Object handler, Exception ex) {
+        AiRequestContext.clear();
+    }
+
+    private Duration requestedTimeout(HttpServletRequest request) {
+        String header = request.getHeader(deadlineProperties.getHeader());
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        try {
+            Duration timeout = DurationStyle.detectAndParse(header.trim(), ChronoUnit.MILLIS);
+            return timeout.isNegative() || timeout.isZero() ? null : timeout;
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring invalid {} value: {}", deadlineProperties.getHeader(), header);
+            return null;
+        }
+    }
+
+    /**
+     * Abandons the request's upstream calls once nobody waits for the answer.
+     */
+    @RequiredArgsConstructor
+    private static final class CancellingListener implements AsyncListener {
+
+        private final AiCancellation cancellation;
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            cancellation.cancel();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            cancellation.cancel();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -4,15 +4,24 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 
+import java.util.zip.Deflater;
+
 @Configuration
 public class FastApiConfig {
     
     @Value("${fastapi.base.url:http://localhost:8000}")
     private String fastApiBaseUrl;
     
+    @Value("${fastapi.compression.request-enabled:false}")
+    private boolean compressRequests;
+    
+    @Value("${fastapi.compression.min-request-size:16KB}")
+    private DataSize minCompressedRequestSize;
+    
     public String getFastApiBaseUrl() {
         return fastApiBaseUrl;
     }
@@ -23,6 +32,10 @@ public class FastApiConfig {
         SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
         factory.setConnectTimeout(5000); // 5 sec
         factory.setReadTimeout(30000);   // 30 sec
-        return new RestTemplate(factory);
+        RestTemplate restTemplate = new RestTemplate(factory);
+        // The sidecar can gzip its responses; request bodies only if its middleware decodes them
+        restTemplate.getInterceptors().add(new GzipCompressionInterceptor(
+                compressRequests, minCompressedRequestSize.toBytes(), Deflater.BEST_SPEED));
+        return restTemplate;
     }
-}
\ No newline at end of file
+}
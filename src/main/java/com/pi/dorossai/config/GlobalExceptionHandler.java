@@ -1,5 +1,6 @@
 package com.pi.dorossai.config;
 
+import com.pi.dorossai.ai.service.AiTokenBudgetExceededException;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ConstraintViolation;
@@ -269,6 +270,23 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.REQUEST_TIMEOUT);
     }
 
+    // Input over the feature's token budget
+    @ExceptionHandler(AiTokenBudgetExceededException.class)
+    public ResponseEntity<ErrorResponse> handleTokenBudgetExceededException(
+            AiTokenBudgetExceededException ex, HttpServletRequest request) {
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+            HttpStatus.PAYLOAD_TOO_LARGE.value(),
+            "Payload Too Large",
+            ex.getMessage(),
+            request.getRequestURI(),
+            "ERR_AI_INPUT_001"
+        );
+        
+        log.warn("Input over token budget on path {}: {}", request.getRequestURI(), ex.getMessage());
+        return new ResponseEntity<>(errorResponse, HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
     // AI Service specific errors
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<ErrorResponse> handleRuntimeException(
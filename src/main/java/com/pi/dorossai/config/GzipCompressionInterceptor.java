@@ -0,0 +1,136 @@
+package com.pi.dorossai.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Outbound gzip for {@code RestTemplate}s talking to our upstreams. Request
+ * bodies of at least {@code minRequestSize} bytes are gzipped when the peer
+ * is known to accept {@code Content-Encoding: gzip}, and gzipped responses
+ * are asked for with {@code Accept-Encoding} and decoded as they are read,
+ * so streamed responses keep flowing.
+ *
+ * <p>Clients that already decode responses themselves, like the Apache
+ * client, remove the {@code Content-Encoding} header and are left alone.
+ */
+@Slf4j
+public class GzipCompressionInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final String GZIP = "gzip";
+
+    private final boolean compressRequests;
+    private final long minRequestSize;
+    private final int level;
+
+    /**
+     * @param level deflate level, from {@link Deflater#BEST_SPEED} to
+     *              {@link Deflater#BEST_COMPRESSION}
+     */
+    public GzipCompressionInterceptor(boolean compressRequests, long minRequestSize, int level) {
+        this.compressRequests = compressRequests;
+        this.minRequestSize = minRequestSize;
+        this.level = level;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        HttpHeaders headers = request.getHeaders();
+        byte[] payload = body;
+        if (compressRequests && body.length >= minRequestSize && !headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            payload = gzip(body);
+            headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+            log.debug("Compressed {} request body from {} to {} bytes", request.getURI().getHost(), body.length, payload.length);
+        }
+        if (!headers.containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+            headers.set(HttpHeaders.ACCEPT_ENCODING, GZIP);
+        }
+
+        ClientHttpResponse response = execution.execute(request, payload);
+        String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        return GZIP.equalsIgnoreCase(encoding) ? new GunzippingResponse(response) : response;
+    }
+
+    private byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static class GunzippingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final HttpHeaders headers;
+        private InputStream body;
+
+        GunzippingResponse(ClientHttpResponse response) {
+            this.response = response;
+            this.headers = new HttpHeaders();
+            this.headers.putAll(response.getHeaders());
+            this.headers.remove(HttpHeaders.CONTENT_ENCODING);
+            this.headers.remove(HttpHeaders.CONTENT_LENGTH);
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                PushbackInputStream raw = new PushbackInputStream(response.getBody(), 1);
+                int first = raw.read();
+                if (first == -1) {
+                    // Empty bodies, e.g. of errors, are sometimes labelled gzip too
+                    body = InputStream.nullInputStream();
+                } else {
+                    raw.unread(first);
+                    body = new GZIPInputStream(raw, 512) {
+                        @Override
+                        public int available() throws IOException {
+                            // GZIPInputStream reports 1 until the end, which makes readers
+                            // block for a full buffer instead of passing on streamed events
+                            return Math.min(super.available(), in.available());
+                        }
+                    };
+                }
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+}
@@ -1,16 +1,31 @@
 package com.pi.dorossai.config;
 
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
+@RequiredArgsConstructor
 public class WebConfig implements WebMvcConfigurer {
     
+    private final AiRequestContextInterceptor aiRequestContextInterceptor;
+    
+    // Async AI endpoints may wait for up to three upstream attempts plus backoff
+    @Value("${dorossai.ai.async.request-timeout:200000}")
+    private long asyncRequestTimeout;
+    
     // Rate limiting has been removed
     @Override
     public void addInterceptors(@NonNull InterceptorRegistry registry) {
-        // No interceptors added - rate limiting removed
+        registry.addInterceptor(aiRequestContextInterceptor).addPathPatterns("/api/**");
+    }
+    
+    @Override
+    public void configureAsyncSupport(@NonNull AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(asyncRequestTimeout);
     }
 }
@@ -17,6 +17,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
@@ -115,7 +117,7 @@ public class DocumentController {
             )
         )
     })
-    public ResponseEntity<DocumentQAResponse> askDocument(
+    public CompletableFuture<ResponseEntity<DocumentQAResponse>> askDocument(
         @io.swagger.v3.oas.annotations.parameters.RequestBody(
             description = "Document Q&A request with question and context",
             required = true,
@@ -156,7 +158,7 @@ public class DocumentController {
         @Valid @RequestBody DocumentQARequest request) {
         log.info("Received document Q&A request for question: {}", request.getQuestion());
         
-        DocumentQAResponse response = documentService.askDocument(request);
-        return ResponseEntity.ok(response);
+        return documentService.askDocumentAsync(request)
+            .thenApply(ResponseEntity::ok);
     }
 }
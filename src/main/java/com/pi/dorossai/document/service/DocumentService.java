@@ -1,20 +1,24 @@
 package com.pi.dorossai.document.service;
 
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiMetrics;
 import com.pi.dorossai.ai.service.AiService;
+import com.pi.dorossai.ai.service.AiServiceException;
 import com.pi.dorossai.ai.service.AiResponseCleaner;
+import com.pi.dorossai.ai.service.AiTokenBudgets;
 import com.pi.dorossai.document.dto.DocumentQARequest;
 import com.pi.dorossai.document.dto.DocumentQAResponse;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @RequiredArgsConstructor
@@ -24,36 +28,36 @@ public class DocumentService {
     private final AiService aiService;
     private final AiResponseCleaner responseCleaner;
     private final ObjectMapper objectMapper;
+    private final AiTokenBudgets aiTokenBudgets;
+    private final AiMetrics aiMetrics;
     
-    @Retryable(
-        value = { Exception.class },
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 1000)
-    )
-    public DocumentQAResponse askDocument(DocumentQARequest request) {
-        log.info("Processing document Q&A for question: {}", request.getQuestion());
+    /**
+     * The upstream call and its retries run on the AI executor. Endpoint
+     * failures are passed on as {@link AiServiceException}.
+     */
+    public CompletableFuture<DocumentQAResponse> askDocumentAsync(DocumentQARequest request) {
+        log.info("Processing document Q&A for question: {} (async)", request.getQuestion());
         
-        try {
-            String prompt = buildPrompt(request);
-            
-            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            
-            String response = aiService.callGithubInference(List.of(message), 0.1);
-            
-            // Parse JSON response
-            DocumentQAResponse result = parseAiResponse(response);
-            
-            return result;
-            
-        } catch (Exception e) {
-            log.error("Document Q&A failed: {}", e.getMessage());
-            throw new RuntimeException("Failed to answer question: " + e.getMessage(), e);
-        }
+        return aiService.callGithubInferenceAsync(AiFeature.DOCUMENT_QA, buildMessages(request), 0.1)
+            .thenApply(response -> parseAiResponse(response))
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("Document Q&A failed: {}", cause.getMessage());
+                if (cause instanceof AiServiceException aiFailure) {
+                    throw aiFailure;
+                }
+                throw new RuntimeException("Failed to answer question: " + cause.getMessage(), cause);
+            });
+    }
+    
+    private List<Map<String, String>> buildMessages(DocumentQARequest request) {
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", aiTokenBudgets.fit(AiFeature.DOCUMENT_QA, request.getContext(), context -> buildPrompt(request, context)));
+        return List.of(message);
     }
     
-    private String buildPrompt(DocumentQARequest request) {
+    private String buildPrompt(DocumentQARequest request, String context) {
         return String.format(
             "Answer the following question based strictly on the provided context. " +
             "If the answer cannot be determined from the context, respond with " +
@@ -73,7 +77,7 @@ public class DocumentService {
             "- Use 'medium' confidence when the answer requires some inference\n" +
             "- Use 'low' confidence when the context only partially supports the answer",
             request.getQuestion(),
-            request.getContext()
+            context
         );
     }
       private DocumentQAResponse parseAiResponse(String response) {        
@@ -92,6 +96,7 @@ public class DocumentService {
             
         } catch (JsonProcessingException e) {
             log.warn("Failed to parse JSON response, creating fallback response: {}", e.getMessage());
+            aiMetrics.parseFailure(AiFeature.DOCUMENT_QA);
             
             // Fallback: treat the entire response as the answer
             return new DocumentQAResponse(response, "medium");
@@ -1,5 +1,6 @@
 package com.pi.dorossai.flashcard;
 
+import com.pi.dorossai.ai.service.AiStreamEmitter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
@@ -11,11 +12,16 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api")
@@ -25,6 +31,7 @@ import org.springframework.web.bind.annotation.RestController;
 public class FlashcardController {
     
     private final FlashcardService flashcardService;
+    private final AiStreamEmitter aiStreamEmitter;
       @PostMapping("/generate-flashcards")
     @Operation(
         summary = "Generate Flashcards", 
@@ -144,7 +151,7 @@ public class FlashcardController {
             )
         )
     })
-    public ResponseEntity<FlashcardResponse> generateFlashcards(
+    public CompletableFuture<ResponseEntity<FlashcardResponse>> generateFlashcards(
         @io.swagger.v3.oas.annotations.parameters.RequestBody(
             description = "Flashcard generation request with topic and number of cards",
             required = true,
@@ -183,7 +190,17 @@ public class FlashcardController {
         )
         @Valid @RequestBody FlashcardRequest request) {
         log.info("Received request to generate flashcards on topic: {}", request.getTopic());
-        FlashcardResponse response = flashcardService.generateFlashcards(request);
-        return ResponseEntity.ok(response);
+        return flashcardService.generateFlashcardsAsync(request)
+            .thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping(value = "/generate-flashcards/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Generate Flashcards (Streaming)",
+        description = "Stream the flashcards as Server-Sent Events while they are generated. Each `flashcard` event carries one complete flashcard as soon as the model has finished it, followed by a `done` event with the full flashcard response, or an `error` event."
+    )
+    public SseEmitter generateFlashcardsStream(@Valid @RequestBody FlashcardRequest request) {
+        log.info("Received request to stream flashcards on topic: {}", request.getTopic());
+        return aiStreamEmitter.stream("flashcard", (Consumer<Flashcard> onCard) -> flashcardService.generateFlashcardsStream(request, onCard));
     }
-}
\ No newline at end of file
+}
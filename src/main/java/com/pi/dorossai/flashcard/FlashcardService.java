@@ -1,70 +1,101 @@
 package com.pi.dorossai.flashcard;
 
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiRequest;
+import com.pi.dorossai.ai.service.AiMetrics;
 import com.pi.dorossai.ai.service.AiService;
+import com.pi.dorossai.ai.service.AiServiceException;
+import com.pi.dorossai.ai.service.AiTimeoutException;
 import com.pi.dorossai.ai.service.AiResponseCleaner;
+import com.pi.dorossai.ai.service.JsonArrayItemStreamer;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.ResourceAccessException;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FlashcardService {
     
+    private static final int OUTPUT_TOKENS_PER_CARD = 100;
+    private static final int OUTPUT_TOKENS_OVERHEAD = 50;
+    
     private final AiService aiService;
     private final AiResponseCleaner responseCleaner;
-    private final ObjectMapper objectMapper;    @Retryable(
-        value = { Exception.class },
-        exclude = { ResourceAccessException.class },
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 1000)
-    )
-    public FlashcardResponse generateFlashcards(FlashcardRequest request) {
-        log.info("Generating flashcards for topic: {}", request.getTopic());
+    private final ObjectMapper objectMapper;
+    private final AiMetrics aiMetrics;
+
+    /**
+     * Generates the flashcards; the upstream call and its retries run on the
+     * AI executor. A timeout resolves to a single card asking to try again,
+     * and endpoint failures are passed on as {@link AiServiceException}.
+     */
+    public CompletableFuture<FlashcardResponse> generateFlashcardsAsync(FlashcardRequest request) {
+        log.info("Generating flashcards for topic: {} (async)", request.getTopic());
         
-        try {
-            String prompt = buildPrompt(request);
-            
-            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            
-            String response = aiService.callGithubInference(List.of(message), 0.7);
-            
-            // Parse JSON response
-            FlashcardResponse result = parseAiResponse(response, request);
-              return result;
-              } catch (ResourceAccessException e) {
-            if (e.getCause() != null && e.getCause().getMessage().contains("Read timed out")) {
-                log.error("Flashcard generation timed out: {}", e.getMessage());
-                // Return a fallback response for timeout
-                List<Flashcard> fallbackCards = List.of(
-                    new Flashcard(
-                        "Service Timeout",
-                        "The flashcard generation service is currently experiencing high load. Please try again in a moment."
-                    )
-                );
-                return new FlashcardResponse(fallbackCards, request.getTopic(), 1);
-            } else {
-                log.error("Flashcard generation connection failed: {}", e.getMessage());
-                throw new RuntimeException("Failed to connect to AI service: " + e.getMessage(), e);
-            }
-        } catch (Exception e) {
-            log.error("Flashcard generation failed: {}", e.getMessage());
-            throw new RuntimeException("Failed to generate flashcards: " + e.getMessage(), e);
-        }
+        return aiService.callGithubInferenceAsync(buildAiRequest(request))
+            .thenApply(response -> parseAiResponse(response, request))
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof AiTimeoutException) {
+                    log.error("Flashcard generation timed out: {}", cause.getMessage());
+                    aiMetrics.fallback(AiFeature.FLASHCARDS, "timeout");
+                    return createTimeoutFallbackResponse(request);
+                }
+                if (cause instanceof AiServiceException aiFailure) {
+                    log.error("Flashcard generation connection failed: {}", cause.getMessage());
+                    throw aiFailure;
+                }
+                log.error("Flashcard generation failed: {}", cause.getMessage());
+                throw new RuntimeException("Failed to generate flashcards: " + cause.getMessage(), cause);
+            });
+    }
+    
+    /**
+     * Streams the flashcard generation and hands every card to {@code onCard}
+     * as soon as its JSON object is complete. The returned future completes with
+     * the full deck, parsed exactly like the non-streaming path.
+     */
+    public CompletableFuture<FlashcardResponse> generateFlashcardsStream(FlashcardRequest request, Consumer<Flashcard> onCard) {
+        log.info("Streaming flashcards for topic: {}", request.getTopic());
+        
+        JsonArrayItemStreamer streamer = new JsonArrayItemStreamer(objectMapper, "flashcards",
+            node -> onCard.accept(new Flashcard(node.path("question").asText(null), node.path("answer").asText(null))));
+        
+        return aiService.streamGithubInferenceAsync(AiFeature.FLASHCARDS, buildMessages(request), 0.7, streamer::feed)
+            .thenApply(response -> parseAiResponse(response, request));
+    }
+    
+    /**
+     * The answer is bounded by the number of cards asked for.
+     */
+    private AiRequest buildAiRequest(FlashcardRequest request) {
+        return AiRequest.builder()
+            .feature(AiFeature.FLASHCARDS)
+            .messages(buildMessages(request))
+            .temperature(0.7)
+            .maxOutputTokens(OUTPUT_TOKENS_PER_CARD * request.getNumCards() + OUTPUT_TOKENS_OVERHEAD)
+            .build();
+    }
+    
+    private List<Map<String, String>> buildMessages(FlashcardRequest request) {
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", buildPrompt(request));
+        return List.of(message);
     }
-      private String buildPrompt(FlashcardRequest request) {
+    
+    private String buildPrompt(FlashcardRequest request) {
         return String.format(
             "Generate %d educational flashcards on the topic: %s\n\n" +
             "IMPORTANT: Respond ONLY with valid JSON, no markdown, no explanations, no additional text.\n\n" +
@@ -90,7 +121,19 @@ public class FlashcardService {
             request.getTopic(),
             request.getNumCards()
         );
-    }      private FlashcardResponse parseAiResponse(String response, FlashcardRequest request) {
+    }
+    
+    private FlashcardResponse createTimeoutFallbackResponse(FlashcardRequest request) {
+        List<Flashcard> fallbackCards = List.of(
+            new Flashcard(
+                "Service Timeout",
+                "The flashcard generation service is currently experiencing high load. Please try again in a moment."
+            )
+        );
+        return new FlashcardResponse(fallbackCards, request.getTopic(), 1);
+    }
+    
+    private FlashcardResponse parseAiResponse(String response, FlashcardRequest request) {
         try {
             // Clean the response using the centralized cleaner
             String cleanedResponse = responseCleaner.cleanJsonResponse(response);
@@ -120,6 +163,7 @@ public class FlashcardService {
             
         } catch (JsonProcessingException e) {
             log.warn("Failed to parse JSON response, creating fallback flashcards: {}", e.getMessage());
+            aiMetrics.parseFailure(AiFeature.FLASHCARDS);
             
             // Fallback: create a single flashcard with the response
             List<Flashcard> fallbackCards = List.of(
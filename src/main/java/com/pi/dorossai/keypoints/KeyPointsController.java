@@ -17,6 +17,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.PostMapping;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -91,7 +93,7 @@ public class KeyPointsController {
             )
         )
     })
-    public ResponseEntity<?> extractKeyPoints(
+    public CompletableFuture<ResponseEntity<?>> extractKeyPoints(
         @io.swagger.v3.oas.annotations.parameters.RequestBody(
             description = "Key points extraction request with text content and number of points",
             required = true,
@@ -129,10 +131,15 @@ public class KeyPointsController {
         )        @Valid @RequestBody KeyPointsRequest request) {
         log.info("Received request to extract key points from text of length: {}", request.getText().length());
         
-        try {
-            KeyPointsResponse response = keyPointsService.extractKeyPoints(request);
-            return ResponseEntity.ok(response);
-        } catch (IllegalArgumentException e) {
+        return keyPointsService.extractKeyPointsAsync(request)
+            .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+            .exceptionally(this::toErrorResponse);
+    }
+
+    private ResponseEntity<?> toErrorResponse(Throwable throwable) {
+        Throwable e = throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+        if (e instanceof IllegalArgumentException) {
             log.error("Validation error during key points extraction", e);
             ErrorResponse error = ErrorResponse.builder()
                 .timestamp(LocalDateTime.now())
@@ -144,18 +151,17 @@ public class KeyPointsController {
                 .errorCategory("VALIDATION_ERROR")
                 .build();
             return ResponseEntity.badRequest().body(error);
-        } catch (Exception e) {
-            log.error("Error during key points extraction", e);
-            ErrorResponse error = ErrorResponse.builder()
-                .timestamp(LocalDateTime.now())
-                .status(500)
-                .error("Internal Server Error")
-                .message("AI key points extraction service is temporarily unavailable")
-                .path("/api/extract-key-points")
-                .errorCode("ERR_AI_SERVICE_001")
-                .errorCategory("AI_SERVICE_ERROR")
-                .build();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
         }
+        log.error("Error during key points extraction", e);
+        ErrorResponse error = ErrorResponse.builder()
+            .timestamp(LocalDateTime.now())
+            .status(500)
+            .error("Internal Server Error")
+            .message("AI key points extraction service is temporarily unavailable")
+            .path("/api/extract-key-points")
+            .errorCode("ERR_AI_SERVICE_001")
+            .errorCategory("AI_SERVICE_ERROR")
+            .build();
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
     }
 }
\ No newline at end of file
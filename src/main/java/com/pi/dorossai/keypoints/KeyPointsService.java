@@ -2,82 +2,114 @@ package com.pi.dorossai.keypoints;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pi.dorossai.ai.cache.NearDuplicateCache;
 import com.pi.dorossai.ai.service.AiResponseCleaner;
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiMetrics;
 import com.pi.dorossai.ai.service.AiService;
+import com.pi.dorossai.ai.service.AiTimeoutException;
+import com.pi.dorossai.ai.service.AiTokenBudgets;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.ResourceAccessException;
 
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class KeyPointsService {
     private final AiService aiService;
+    private final NearDuplicateCache nearDuplicateCache;
     private final ObjectMapper objectMapper;
     private final AiResponseCleaner aiResponseCleaner;
+    private final AiTokenBudgets aiTokenBudgets;
+    private final AiMetrics aiMetrics;
 
-    @Retryable(
-        value = { Exception.class },
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 1000)
-    )
-    public KeyPointsResponse extractKeyPoints(KeyPointsRequest request) {
-        log.info("Extracting key points from text of length: {} with {} points requested", 
+    /**
+     * The upstream call and its retries run on the AI executor. Unparseable
+     * answers, timeouts and other failures resolve to fallback responses.
+     */
+    public CompletableFuture<KeyPointsResponse> extractKeyPointsAsync(KeyPointsRequest request) {
+        log.info("Extracting key points from text of length: {} with {} points requested (async)", 
                 request.getText().length(), request.getNumPoints());
         
-        try {
-            String prompt = String.format("""
-                Extract exactly %d key points from the following text. Return them as a JSON response with the following structure:
-                {
-                  "keyPoints": ["point 1", "point 2", ...],
-                  "originalLength": %d
+        return nearDuplicateCache.getOrCall(AiFeature.KEY_POINTS, String.valueOf(request.getNumPoints()), request.getText(),
+                () -> aiService.callGithubInferenceAsync(AiFeature.KEY_POINTS, buildMessages(request), 0.3),
+                this::hasKeyPoints)
+            .thenApply(aiResponse -> {
+                String cleanedResponse = aiResponseCleaner.cleanJsonResponse(aiResponse);
+                try {
+                    return parseAiResponse(cleanedResponse, request);
+                } catch (JsonProcessingException e) {
+                    log.warn("Failed to parse JSON response from AI service: {}", e.getMessage());
+                    aiMetrics.parseFailure(AiFeature.KEY_POINTS);
+                    return createFallbackResponse(request);
+                }
+            })
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof AiTimeoutException) {
+                    log.warn("Request timeout while extracting key points: {}", cause.getMessage());
+                    aiMetrics.fallback(AiFeature.KEY_POINTS, "timeout");
+                    return createTimeoutFallbackResponse(request);
                 }
-                
-                Requirements:
-                - Extract the most important and meaningful points
-                - Each point should be concise and clear (1-2 sentences max)
-                - Points should be distinct and non-overlapping
-                - Maintain the original meaning and context
-                - Return exactly %d points
-                
-                IMPORTANT: Respond ONLY with valid JSON, no markdown code blocks, no additional text.
-                
-                Text to analyze:
-                %s
-                """, 
-                request.getNumPoints(), 
-                request.getText().length(),
-                request.getNumPoints(),
-                request.getText());            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-              String aiResponse = aiService.callGithubInference(List.of(message), 0.3);
-            String cleanedResponse = aiResponseCleaner.cleanJsonResponse(aiResponse);
+                log.error("Error extracting key points", cause);
+                aiMetrics.fallback(AiFeature.KEY_POINTS, "error");
+                return createFallbackResponse(request);
+            });
+    }
+
+    private List<Map<String, String>> buildMessages(KeyPointsRequest request) {
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", aiTokenBudgets.fit(AiFeature.KEY_POINTS, request.getText(), text -> buildPrompt(request, text)));
+        return List.of(message);
+    }
+
+    private String buildPrompt(KeyPointsRequest request, String text) {
+        return String.format("""
+            Extract exactly %d key points from the following text. Return them as a JSON response with the following structure:
+            {
+              "keyPoints": ["point 1", "point 2", ...],
+              "originalLength": %d
+            }
             
-            log.debug("AI response for key points extraction: {}", cleanedResponse);
+            Requirements:
+            - Extract the most important and meaningful points
+            - Each point should be concise and clear (1-2 sentences max)
+            - Points should be distinct and non-overlapping
+            - Maintain the original meaning and context
+            - Return exactly %d points
             
-            // Parse the JSON response
-            return parseAiResponse(cleanedResponse, request);
+            IMPORTANT: Respond ONLY with valid JSON, no markdown code blocks, no additional text.
             
+            Text to analyze:
+            %s
+            """, 
+            request.getNumPoints(), 
+            request.getText().length(),
+            request.getNumPoints(),
+            text);
+    }
+
+    /**
+     * Whether the answer parses to a non-empty key point list, so that it can
+     * be served for near-duplicate texts; a cut-off answer is no valid JSON.
+     */
+    private boolean hasKeyPoints(String aiResponse) {
+        try {
+            JsonNode keyPoints = objectMapper.readTree(aiResponseCleaner.cleanJsonResponse(aiResponse)).path("keyPoints");
+            return keyPoints.isArray() && !keyPoints.isEmpty();
         } catch (JsonProcessingException e) {
-            log.warn("Failed to parse JSON response from AI service: {}", e.getMessage());
-            log.debug("Raw AI response that failed to parse: {}", e.getMessage());
-            return createFallbackResponse(request);
-        } catch (ResourceAccessException e) {
-            log.warn("Request timeout while extracting key points: {}", e.getMessage());
-            return createTimeoutFallbackResponse(request);
-        } catch (Exception e) {
-            log.error("Error extracting key points", e);
-            return createFallbackResponse(request);
+            return false;
         }
     }
 
@@ -87,15 +119,15 @@ public class KeyPointsService {
         
         @SuppressWarnings("unchecked")
         List<String> keyPoints = (List<String>) responseMap.get("keyPoints");
-        Integer originalLength = (Integer) responseMap.get("originalLength");
         
         if (keyPoints == null || keyPoints.isEmpty()) {
             log.warn("AI response did not contain valid key points, using fallback");
+            aiMetrics.fallback(AiFeature.KEY_POINTS, "empty");
             return createFallbackResponse(request);
         }
         
-        KeyPointsResponse response = new KeyPointsResponse(keyPoints, 
-                originalLength != null ? originalLength : request.getText().length());
+        // Not the model's originalLength: a near-duplicate hit was answered for another text
+        KeyPointsResponse response = new KeyPointsResponse(keyPoints, request.getText().length());
         
         log.info("Successfully extracted {} key points", response.getKeyPoints().size());
         return response;
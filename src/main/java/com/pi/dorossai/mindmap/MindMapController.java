@@ -20,6 +20,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
@@ -109,7 +111,7 @@ public class MindMapController {
                 )
             )        )
     })
-    public ResponseEntity<MindMapResponse> generateMindMap(
+    public CompletableFuture<ResponseEntity<MindMapResponse>> generateMindMap(
         @io.swagger.v3.oas.annotations.parameters.RequestBody(
             description = "The topic for which to generate a mind map. Provide a clear, specific topic for better results. Complex or broad topics will generate more extensive mind maps.",
             required = true,
@@ -146,9 +148,10 @@ public class MindMapController {
         )
         @Valid @RequestBody MindMapRequest request) {
         log.info("Generating mind map for topic: {}", request.getTopic());
-        String mermaid = mindMapService.generateMindMapMermaid(request.getTopic());
-        MindMapResponse response = new MindMapResponse(mermaid);
-        log.info("Mind map generated successfully");
-        return ResponseEntity.ok(response);
+        return mindMapService.generateMindMapMermaidAsync(request.getTopic())
+            .thenApply(mermaid -> {
+                log.info("Mind map generated successfully");
+                return ResponseEntity.ok(new MindMapResponse(mermaid));
+            });
     }
 }
@@ -3,8 +3,13 @@ package com.pi.dorossai.mindmap.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import com.pi.dorossai.ai.service.AiFeature;
 import com.pi.dorossai.ai.service.AiService;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Service for generating mind maps in Mermaid format.
  * Uses AI to create hierarchical concept maps from topics.
@@ -28,14 +33,23 @@ public class MindMapService {
      * B1 --> B1a[Python]
      * 
      * The resulting mind maps typically have 3-4 levels of hierarchy depending on
-     * the complexity of the topic.
+     * the complexity of the topic. The upstream call runs on the AI executor.
      *
      * @param topic The topic for which to generate a mind map
-     * @return A string containing the Mermaid format diagram code
+     * @return A future completing with the Mermaid format diagram code
      */
-    public String generateMindMapMermaid(String topic) {
-        log.info("Generating mind map for topic: {}", topic);
-        
+    public CompletableFuture<String> generateMindMapMermaidAsync(String topic) {
+        log.info("Generating mind map for topic: {} (async)", topic);
+
+        return aiService.callGithubInferenceAsync(AiFeature.MIND_MAP, buildMessages(topic), 0.7)
+            .thenApply(aiResponse -> {
+                String result = extractMermaid(aiResponse);
+                log.info("Mind map generated successfully with {} characters", result.length());
+                return result;
+            });
+    }
+
+    private List<Map<String, String>> buildMessages(String topic) {
         // Compose a prompt for the AI to generate a mind map in Mermaid format
         StringBuilder prompt = new StringBuilder();
         prompt.append("Generate a comprehensive mind map in Mermaid format for the following topic. ");
@@ -57,17 +71,13 @@ public class MindMapService {
         prompt.append("  SubTopic1 --> Detail2[Detail 2];\n");
 
         // Prepare the message for the AI service
-        var message = java.util.Map.of(
+        return List.of(Map.of(
             "role", "user",
             "content", prompt.toString()
-        );
-        var messages = java.util.List.of(message);
-
-        // Call the AI service (temperature can be adjusted as needed)
-        log.debug("Sending request to AI service");
-        String aiResponse = aiService.callGithubInference(messages, 0.7);
-        log.debug("Received response from AI service");
+        ));
+    }
 
+    private String extractMermaid(String aiResponse) {
         // Extract only the valid Mermaid code (lines starting with 'graph')
         StringBuilder mermaid = new StringBuilder();
         boolean inMermaid = false;
@@ -82,9 +92,6 @@ public class MindMapService {
                 }
             }
         }
-        String result = mermaid.toString().trim();
-        
-        log.info("Mind map generated successfully with {} characters", result.length());
-        return result;
+        return mermaid.toString().trim();
     }
 }
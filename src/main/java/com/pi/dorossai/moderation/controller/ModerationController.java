@@ -19,6 +19,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/moderation")
@@ -163,7 +165,7 @@ public class ModerationController {
             )
         )
     })
-    public ResponseEntity<?> moderateContent(
+    public CompletableFuture<ResponseEntity<?>> moderateContent(
         @io.swagger.v3.oas.annotations.parameters.RequestBody(
             description = "Content moderation request with text and moderation level",
             required = true,
@@ -205,10 +207,15 @@ public class ModerationController {
         log.info("Received content moderation request at {} level for text of length: {}", 
                 request.getLevel(), request.getText().length());
         
-        try {
-            ModerationResponse response = moderationService.moderateContent(request);
-            return ResponseEntity.ok(response);
-        } catch (IllegalArgumentException e) {
+        return moderationService.moderateContentAsync(request)
+            .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+            .exceptionally(this::toErrorResponse);
+    }
+
+    private ResponseEntity<?> toErrorResponse(Throwable throwable) {
+        Throwable e = throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+        if (e instanceof IllegalArgumentException) {
             log.error("Validation error during moderation analysis", e);
             ErrorResponse error = ErrorResponse.builder()
                 .timestamp(LocalDateTime.now())
@@ -220,18 +227,17 @@ public class ModerationController {
                 .errorCategory("VALIDATION_ERROR")
                 .build();
             return ResponseEntity.badRequest().body(error);
-        } catch (Exception e) {
-            log.error("Error during moderation analysis", e);
-            ErrorResponse error = ErrorResponse.builder()
-                .timestamp(LocalDateTime.now())
-                .status(500)
-                .error("Internal Server Error")
-                .message("AI moderation service is temporarily unavailable")
-                .path("/api/moderation/analyze")
-                .errorCode("ERR_AI_SERVICE_001")
-                .errorCategory("AI_SERVICE_ERROR")
-                .build();
-            return ResponseEntity.status(500).body(error);
         }
+        log.error("Error during moderation analysis", e);
+        ErrorResponse error = ErrorResponse.builder()
+            .timestamp(LocalDateTime.now())
+            .status(500)
+            .error("Internal Server Error")
+            .message("AI moderation service is temporarily unavailable")
+            .path("/api/moderation/analyze")
+            .errorCode("ERR_AI_SERVICE_001")
+            .errorCategory("AI_SERVICE_ERROR")
+            .build();
+        return ResponseEntity.status(500).body(error);
     }
 }
@@ -1,5 +1,8 @@
 package com.pi.dorossai.moderation.service;
 
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiRequestContext;
+import com.pi.dorossai.ai.service.AiMetrics;
 import com.pi.dorossai.ai.service.AiService;
 import com.pi.dorossai.ai.service.AiResponseCleaner;
 import com.pi.dorossai.moderation.dto.ModerationRequest;
@@ -8,14 +11,14 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @RequiredArgsConstructor
@@ -25,42 +28,59 @@ public class ModerationService {
     private final AiService aiService;
     private final AiResponseCleaner responseCleaner;
     private final ObjectMapper objectMapper;
+    private final ModerationBatcher moderationBatcher;
+    private final AiMetrics aiMetrics;
     
-    @Retryable(
-        value = { Exception.class },
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 1000)
-    )
-    public ModerationResponse moderateContent(ModerationRequest request) {
-        log.info("Moderating content at {} level for text of length: {}", request.getLevel(), request.getText().length());
+    /**
+     * The upstream call and its retries run on the AI executor.
+     */
+    public CompletableFuture<ModerationResponse> moderateContentAsync(ModerationRequest request) {
+        log.info("Moderating content at {} level for text of length: {} (async)", request.getLevel(), request.getText().length());
         
-        try {
-            String prompt = buildPrompt(request);
-            
-            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            
-            String response = aiService.callGithubInference(List.of(message), 0.1);
-            
-            // Parse JSON response
-            ModerationResponse result = parseAiResponse(response, request);
-            
-            return result;
-            
-        } catch (Exception e) {
-            log.error("Content moderation failed: {}", e.getMessage());
-            throw new RuntimeException("Failed to moderate content: " + e.getMessage(), e);
+        return moderate(request)
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("Content moderation failed: {}", cause.getMessage());
+                throw new RuntimeException("Failed to moderate content: " + cause.getMessage(), cause);
+            });
+    }
+    
+    /**
+     * Short texts go through {@link ModerationBatcher} and share an upstream
+     * call with other requests; the rest, and batched requests the batch
+     * could not answer, are moderated on their own.
+     */
+    private CompletableFuture<ModerationResponse> moderate(ModerationRequest request) {
+        if (!moderationBatcher.accepts(request)) {
+            return moderateIndividually(request);
         }
+        AiRequestContext context = AiRequestContext.current();
+        return moderationBatcher.submit(request).thenCompose(verdict -> verdict
+            .map(CompletableFuture::completedFuture)
+            .orElseGet(() -> context.call(() -> moderateIndividually(request))));
     }
     
-    private String buildPrompt(ModerationRequest request) {
-        String threshold = switch (request.getLevel().toLowerCase()) {
+    private CompletableFuture<ModerationResponse> moderateIndividually(ModerationRequest request) {
+        return aiService.callGithubInferenceAsync(AiFeature.MODERATION, buildMessages(request), 0.1)
+            .thenApply(response -> parseAiResponse(response, request));
+    }
+    
+    private List<Map<String, String>> buildMessages(ModerationRequest request) {
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", buildPrompt(request));
+        return List.of(message);
+    }
+    
+    static String thresholdFor(String level) {
+        return switch (level.toLowerCase()) {
             case "strict" -> "very low tolerance for any potentially inappropriate content";
             case "lenient" -> "only flag clearly harmful or dangerous content";
             default -> "standard moderation guidelines";
         };
-        
+    }
+    
+    private String buildPrompt(ModerationRequest request) {
         return String.format(
             "Analyze the following text for potentially harmful or inappropriate content using %s:\n\n" +            "Text to analyze: %s\n\n" +
             "IMPORTANT: Respond ONLY with valid JSON, no markdown code blocks, no explanations, no additional text.\n\n" +
@@ -81,7 +101,7 @@ public class ModerationService {
             "- Spam or misleading information\n\n" +
             "Return valid JSON only, no markdown formatting.\n" +
             "Return confidence score (0.0-1.0) indicating how certain you are about the classification.",
-            threshold,
+            thresholdFor(request.getLevel()),
             request.getText(),
             request.getLevel()
         );
@@ -107,6 +127,7 @@ public class ModerationService {
             
         } catch (JsonProcessingException e) {
             log.warn("Failed to parse JSON response, creating safe fallback response: {}", e.getMessage());
+            aiMetrics.parseFailure(AiFeature.MODERATION);
             
             // Fallback: assume content is safe if we can't parse the response
             return new ModerationResponse(
@@ -1,5 +1,6 @@
 package com.pi.dorossai.quiz;
 
+import com.pi.dorossai.ai.service.AiStreamEmitter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
@@ -11,11 +12,16 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api")
@@ -25,6 +31,7 @@ import org.springframework.web.bind.annotation.RestController;
 public class QuizController {
     
     private final QuizService quizService;
+    private final AiStreamEmitter aiStreamEmitter;
       @PostMapping("/generate-quiz")
     @Operation(
         summary = "Generate Quiz", 
@@ -131,7 +138,7 @@ public class QuizController {
             )
         )
     })
-    public ResponseEntity<QuizResponse> generateQuiz(
+    public CompletableFuture<ResponseEntity<QuizResponse>> generateQuiz(
         @io.swagger.v3.oas.annotations.parameters.RequestBody(
             description = "Quiz generation request with topic, difficulty, and other options",
             required = true,
@@ -177,7 +184,17 @@ public class QuizController {
         )
         @Valid @RequestBody QuizGenerationRequest request) {
         log.info("Received request to generate quiz on topic: {}", request.getTopic());
-        QuizResponse response = quizService.generateQuiz(request);
-        return ResponseEntity.ok(response);
+        return quizService.generateQuizAsync(request)
+            .thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping(value = "/generate-quiz/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Generate Quiz (Streaming)",
+        description = "Stream the quiz as Server-Sent Events while it is generated. Each `question` event carries one complete quiz question as soon as the model has finished it, followed by a `done` event with the full quiz response, or an `error` event."
+    )
+    public SseEmitter generateQuizStream(@Valid @RequestBody QuizGenerationRequest request) {
+        log.info("Received request to stream quiz on topic: {}", request.getTopic());
+        return aiStreamEmitter.stream("question", (Consumer<QuizQuestion> onQuestion) -> quizService.generateQuizStream(request, onQuestion));
     }
-}
\ No newline at end of file
+}
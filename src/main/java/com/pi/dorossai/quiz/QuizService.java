@@ -1,55 +1,95 @@
 package com.pi.dorossai.quiz;
 
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiModelTier;
+import com.pi.dorossai.ai.service.AiRequest;
+import com.pi.dorossai.ai.service.AiMetrics;
 import com.pi.dorossai.ai.service.AiService;
+import com.pi.dorossai.ai.service.AiServiceException;
 import com.pi.dorossai.ai.service.AiResponseCleaner;
+import com.pi.dorossai.ai.service.JsonArrayItemStreamer;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class QuizService {
     
+    private static final int OUTPUT_TOKENS_PER_QUESTION = 200;
+    private static final int OUTPUT_TOKENS_OVERHEAD = 100;
+    
     private final AiService aiService;
     private final AiResponseCleaner responseCleaner;
     private final ObjectMapper objectMapper;
+    private final AiMetrics aiMetrics;
 
-    @Retryable(
-        value = { Exception.class },
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 1000)
-    )
-    public QuizResponse generateQuiz(QuizGenerationRequest request) {
-        log.info("Generating quiz for topic: {}", request.getTopic());
+    /**
+     * The upstream call and its retries run on the AI executor. Endpoint
+     * failures are passed on as {@link AiServiceException}.
+     */
+    public CompletableFuture<QuizResponse> generateQuizAsync(QuizGenerationRequest request) {
+        log.info("Generating quiz for topic: {} (async)", request.getTopic());
         
-        try {
-            String prompt = buildPrompt(request);
-            
-            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            
-            String response = aiService.callGithubInference(List.of(message), 0.6);
-            
-            // Parse JSON response
-            QuizResponse result = parseAiResponse(response, request);
-            
-            return result;
-            
-        } catch (Exception e) {
-            log.error("Quiz generation failed: {}", e.getMessage());
-            throw new RuntimeException("Failed to generate quiz: " + e.getMessage(), e);
-        }
+        return aiService.callGithubInferenceAsync(buildAiRequest(request))
+            .thenApply(response -> parseAiResponse(response, request))
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("Quiz generation failed: {}", cause.getMessage());
+                if (cause instanceof AiServiceException aiFailure) {
+                    throw aiFailure;
+                }
+                throw new RuntimeException("Failed to generate quiz: " + cause.getMessage(), cause);
+            });
+    }
+    
+    /**
+     * Streams the quiz generation and hands every question to {@code onQuestion}
+     * as soon as its JSON object is complete. The returned future completes with
+     * the full quiz, parsed exactly like the non-streaming path.
+     */
+    public CompletableFuture<QuizResponse> generateQuizStream(QuizGenerationRequest request, Consumer<QuizQuestion> onQuestion) {
+        log.info("Streaming quiz for topic: {}", request.getTopic());
+        
+        JsonArrayItemStreamer streamer = new JsonArrayItemStreamer(objectMapper, "questions",
+            node -> onQuestion.accept(toQuestion(node)));
+        
+        return aiService.streamGithubInferenceAsync(AiFeature.QUIZ, buildMessages(request), 0.6, streamer::feed)
+            .thenApply(response -> parseAiResponse(response, request));
+    }
+    
+    /**
+     * Hard quizzes always go to the large model, however short the prompt.
+     * The answer is bounded by the number of questions asked for.
+     */
+    private AiRequest buildAiRequest(QuizGenerationRequest request) {
+        return AiRequest.builder()
+            .feature(AiFeature.QUIZ)
+            .messages(buildMessages(request))
+            .temperature(0.6)
+            .maxOutputTokens(OUTPUT_TOKENS_PER_QUESTION * request.getNumQuestions() + OUTPUT_TOKENS_OVERHEAD)
+            .minimumTier("hard".equalsIgnoreCase(request.getDifficulty()) ? AiModelTier.LARGE : AiModelTier.SMALL)
+            .build();
+    }
+    
+    private List<Map<String, String>> buildMessages(QuizGenerationRequest request) {
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", buildPrompt(request));
+        return List.of(message);
     }
     
     private String buildPrompt(QuizGenerationRequest request) {
@@ -93,24 +133,11 @@ public class QuizService {
             String cleanedResponse = responseCleaner.cleanJsonResponse(response);
             
             // Try to parse as JSON first
-            @SuppressWarnings("unchecked")
-            Map<String, Object> jsonResponse = objectMapper.readValue(cleanedResponse, Map.class);
-            
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> questionsData = (List<Map<String, Object>>) jsonResponse.get("questions");
+            JsonNode jsonResponse = objectMapper.readValue(cleanedResponse, ObjectNode.class);
             
             List<QuizQuestion> questions = new ArrayList<>();
-            if (questionsData != null) {
-                for (Map<String, Object> qData : questionsData) {
-                    @SuppressWarnings("unchecked")
-                    List<String> options = (List<String>) qData.get("options");
-                    questions.add(new QuizQuestion(
-                        (String) qData.get("question"),
-                        options != null ? options : List.of("A", "B", "C", "D"),
-                        (String) qData.get("correctAnswer"),
-                        (String) qData.get("explanation")
-                    ));
-                }
+            for (JsonNode qData : jsonResponse.path("questions")) {
+                questions.add(toQuestion(qData));
             }
               return new QuizResponse(
                 questions,
@@ -121,6 +148,7 @@ public class QuizService {
             
         } catch (JsonProcessingException e) {
             log.warn("Failed to parse JSON response, creating fallback quiz: {}", e.getMessage());
+            aiMetrics.parseFailure(AiFeature.QUIZ);
             
             // Fallback: create a single question with the response
             List<QuizQuestion> fallbackQuestions = List.of(
@@ -139,4 +167,16 @@ public class QuizService {
             );
         }
     }
+    
+    private QuizQuestion toQuestion(JsonNode qData) {
+        JsonNode optionsData = qData.path("options");
+        List<String> options = new ArrayList<>();
+        optionsData.forEach(option -> options.add(option.asText()));
+        return new QuizQuestion(
+            qData.path("question").asText(null),
+            optionsData.isArray() ? options : List.of("A", "B", "C", "D"),
+            qData.path("correctAnswer").asText(null),
+            qData.path("explanation").asText(null)
+        );
+    }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.pi.dorossai.summarization;
 
+import com.pi.dorossai.ai.service.AiStreamEmitter;
+import com.pi.dorossai.ai.service.AiTokenBudgetExceededException;
 import com.pi.dorossai.config.ErrorResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -14,12 +16,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PostMapping;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api")
@@ -29,6 +35,7 @@ import org.springframework.web.bind.annotation.RestController;
 public class SummarizationController {
     
     private final SummarizationService summarizationService;
+    private final AiStreamEmitter aiStreamEmitter;
       @PostMapping("/summarize")
     @Operation(
         summary = "Summarize Text", 
@@ -87,7 +94,7 @@ public class SummarizationController {
             )
         )
     })
-    public ResponseEntity<?> summarizeText(
+    public CompletableFuture<ResponseEntity<?>> summarizeText(
         @io.swagger.v3.oas.annotations.parameters.RequestBody(
             description = "Text summarization request with content and target language",
             required = true,
@@ -118,10 +125,15 @@ public class SummarizationController {
         )        @Valid @RequestBody SummarizationRequest request) {
         log.info("Received request to summarize text of length: {}", request.getText().length());
         
-        try {
-            SummarizationResponse response = summarizationService.summarizeText(request);
-            return ResponseEntity.ok(response);
-        } catch (IllegalArgumentException e) {
+        return summarizationService.summarizeTextAsync(request)
+            .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+            .exceptionally(this::toErrorResponse);
+    }
+
+    private ResponseEntity<?> toErrorResponse(Throwable throwable) {
+        Throwable e = throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+        if (e instanceof IllegalArgumentException) {
             log.error("Validation error during text summarization", e);
             ErrorResponse error = ErrorResponse.builder()
                 .timestamp(LocalDateTime.now())
@@ -133,18 +145,40 @@ public class SummarizationController {
                 .errorCategory("VALIDATION_ERROR")
                 .build();
             return ResponseEntity.badRequest().body(error);
-        } catch (Exception e) {
-            log.error("Error during text summarization", e);
+        }
+        if (e instanceof AiTokenBudgetExceededException) {
+            // Same body as GlobalExceptionHandler, for overruns found while condensing the parts
+            log.warn("Input over token budget on path /api/summarize: {}", e.getMessage());
             ErrorResponse error = ErrorResponse.builder()
                 .timestamp(LocalDateTime.now())
-                .status(500)
-                .error("Internal Server Error")
-                .message("AI summarization service is temporarily unavailable")
+                .status(HttpStatus.PAYLOAD_TOO_LARGE.value())
+                .error("Payload Too Large")
+                .message(e.getMessage())
                 .path("/api/summarize")
-                .errorCode("ERR_AI_SERVICE_001")
-                .errorCategory("AI_SERVICE_ERROR")
+                .errorCode("ERR_AI_INPUT_001")
                 .build();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(error);
         }
+        log.error("Error during text summarization", e);
+        ErrorResponse error = ErrorResponse.builder()
+            .timestamp(LocalDateTime.now())
+            .status(500)
+            .error("Internal Server Error")
+            .message("AI summarization service is temporarily unavailable")
+            .path("/api/summarize")
+            .errorCode("ERR_AI_SERVICE_001")
+            .errorCategory("AI_SERVICE_ERROR")
+            .build();
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+    }
+
+    @PostMapping(value = "/summarize/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Summarize Text (Streaming)",
+        description = "Stream the summary as Server-Sent Events while it is generated. Each `token` event carries a chunk of text, followed by a `done` event with the complete summarization response, or an `error` event."
+    )
+    public SseEmitter summarizeTextStream(@Valid @RequestBody SummarizationRequest request) {
+        log.info("Received request to stream summary of text of length: {}", request.getText().length());
+        return aiStreamEmitter.stream(onToken -> summarizationService.summarizeTextStream(request, onToken));
     }
-}
\ No newline at end of file
+}
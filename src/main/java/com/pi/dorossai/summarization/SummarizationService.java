@@ -1,18 +1,28 @@
 package com.pi.dorossai.summarization;
 
+import com.pi.dorossai.ai.cache.NearDuplicateCache;
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiMetrics;
 import com.pi.dorossai.ai.service.AiService;
+import com.pi.dorossai.ai.service.AiServiceException;
 import com.pi.dorossai.ai.service.AiResponseCleaner;
+import com.pi.dorossai.ai.service.AiTokenBudgetExceededException;
+import com.pi.dorossai.ai.service.AiTokenBudgets;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -20,38 +30,87 @@ import java.util.Map;
 public class SummarizationService {
     
     private final AiService aiService;
+    private final NearDuplicateCache nearDuplicateCache;
     private final AiResponseCleaner responseCleaner;
     private final ObjectMapper objectMapper;
+    private final AiTokenBudgets aiTokenBudgets;
+    private final AiMetrics aiMetrics;
 
-    @Retryable(
-        value = { Exception.class },
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 1000)
-    )
-    public SummarizationResponse summarizeText(SummarizationRequest request) {
-        log.info("Summarizing text of length: {}", request.getText().length());
+    /**
+     * The upstream call and its retries run on the AI executor. Endpoint
+     * failures are passed on as {@link AiServiceException}, inputs too long to
+     * condense as {@link AiTokenBudgetExceededException}.
+     */
+    public CompletableFuture<SummarizationResponse> summarizeTextAsync(SummarizationRequest request) {
+        log.info("Summarizing text of length: {} (async)", request.getText().length());
         
-        try {
-            String prompt = buildPrompt(request);
-            
-            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            
-            String response = aiService.callGithubInference(List.of(message), 0.3);
-            
-            // Parse JSON response
-            SummarizationResponse result = parseAiResponse(response, request);
-            
-            return result;
-            
-        } catch (Exception e) {
-            log.error("Text summarization failed: {}", e.getMessage());
-            throw new RuntimeException("Failed to summarize text: " + e.getMessage(), e);
+        return nearDuplicateCache.getOrCall(AiFeature.SUMMARIZATION, request.getLanguage(), request.getText(),
+                () -> condense(request, request.getText(), part -> buildPrompt(request, part), 0)
+                    .thenCompose(text -> aiService.callGithubInferenceAsync(AiFeature.SUMMARIZATION, buildMessages(buildPrompt(request, text)), 0.3)),
+                this::hasSummary)
+            .thenApply(response -> parseAiResponse(response, request))
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("Text summarization failed: {}", cause.getMessage());
+                if (cause instanceof AiServiceException aiFailure) {
+                    throw aiFailure;
+                }
+                if (cause instanceof AiTokenBudgetExceededException overBudget) {
+                    throw overBudget;
+                }
+                throw new RuntimeException("Failed to summarize text: " + cause.getMessage(), cause);
+            });
+    }
+    
+    /**
+     * Streams a plain-text summary, passing each token to {@code onToken} as the
+     * model produces it. The future completes with the assembled response.
+     */
+    public CompletableFuture<SummarizationResponse> summarizeTextStream(SummarizationRequest request, Consumer<String> onToken) {
+        log.info("Streaming summary for text of length: {}", request.getText().length());
+        
+        return condense(request, request.getText(), part -> buildStreamingPrompt(request, part), 0)
+            .thenCompose(text -> aiService.streamGithubInferenceAsync(AiFeature.SUMMARIZATION,
+                buildMessages(buildStreamingPrompt(request, text)), 0.3, onToken))
+            .thenApply(text -> {
+                String summary = text.trim();
+                return new SummarizationResponse(summary, request.getLanguage(), request.getText().length(), summary.length());
+            });
+    }
+    
+    /**
+     * Returns text that fits the prompt built by {@code prompt} within the
+     * summarization token budget: {@code text} itself, or the summaries of its
+     * parts, requested concurrently and condensed again if still too long.
+     * Texts needing more parts or rounds than the token budget allows are
+     * rejected with {@link AiTokenBudgetExceededException}.
+     */
+    private CompletableFuture<String> condense(SummarizationRequest request, String text, Function<String, String> prompt,
+                                               int round) {
+        List<String> parts = aiTokenBudgets.split(AiFeature.SUMMARIZATION, text, prompt, round);
+        if (parts.size() == 1) {
+            return CompletableFuture.completedFuture(parts.get(0));
         }
+        List<CompletableFuture<String>> summaries = parts.stream()
+            .map(part -> aiService.callGithubInferenceAsync(AiFeature.SUMMARIZATION, buildMessages(buildPrompt(request, part)), 0.3)
+                .thenApply(response -> {
+                    String summary = parseAiResponse(response, request).getSummary();
+                    return summary != null ? summary : "";
+                }))
+            .toList();
+        return CompletableFuture.allOf(summaries.toArray(CompletableFuture[]::new))
+            .thenCompose(done -> condense(request,
+                summaries.stream().map(CompletableFuture::join).collect(Collectors.joining("\n\n")), prompt, round + 1));
+    }
+    
+    private List<Map<String, String>> buildMessages(String prompt) {
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", prompt);
+        return List.of(message);
     }
     
-    private String buildPrompt(SummarizationRequest request) {
+    private String buildPrompt(SummarizationRequest request, String text) {
         return String.format(
             "Summarize the following text in %s:\n\n" +            "Text: %s\n\n" +
             "IMPORTANT: Respond ONLY with valid JSON, no markdown code blocks, no explanations, no additional text.\n\n" +
@@ -67,12 +126,39 @@ public class SummarizationService {
             "- Return valid JSON only, no markdown formatting\n" +
             "- Ensure the summary is in %s language",
             request.getLanguage(),
-            request.getText(),
+            text,
             request.getText().length(),
             request.getLanguage()
         );
     }
-      private SummarizationResponse parseAiResponse(String response, SummarizationRequest request) {
+    private String buildStreamingPrompt(SummarizationRequest request, String text) {
+        return String.format(
+            "Summarize the following text in %s:\n\n" +
+            "Text: %s\n\n" +
+            "Guidelines:\n" +
+            "- Keep the summary concise but comprehensive\n" +
+            "- Maintain the key points and important details\n" +
+            "- Use clear and accessible language\n" +
+            "- Respond with the summary text only, no JSON, no markdown formatting",
+            request.getLanguage(),
+            text
+        );
+    }
+    
+    /**
+     * Whether the answer parses to a summary, so that it can be served for
+     * near-duplicate texts; a cut-off answer is no valid JSON.
+     */
+    private boolean hasSummary(String response) {
+        try {
+            JsonNode summary = objectMapper.readTree(responseCleaner.cleanJsonResponse(response)).path("summary");
+            return summary.isTextual() && !summary.asText().isBlank();
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+    
+    private SummarizationResponse parseAiResponse(String response, SummarizationRequest request) {
         try {
             // Clean the response using the centralized cleaner
             String cleanedResponse = responseCleaner.cleanJsonResponse(response);
@@ -93,6 +179,7 @@ public class SummarizationService {
             
         } catch (JsonProcessingException e) {
             log.warn("Failed to parse JSON response, using fallback summary: {}", e.getMessage());
+            aiMetrics.parseFailure(AiFeature.SUMMARIZATION);
             
             // Fallback: treat the entire response as summary
             SummarizationResponse result = new SummarizationResponse();
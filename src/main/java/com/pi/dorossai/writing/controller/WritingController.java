@@ -1,5 +1,6 @@
 package com.pi.dorossai.writing.controller;
 
+import com.pi.dorossai.ai.service.AiStreamEmitter;
 import com.pi.dorossai.writing.dto.WritingImprovementRequest;
 import com.pi.dorossai.writing.dto.WritingImprovementResponse;
 import com.pi.dorossai.writing.service.WritingService;
@@ -14,8 +15,12 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api")
@@ -24,7 +29,10 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "Writing Improvement", description = "AI-powered writing enhancement services")
 public class WritingController {
     
-    private final WritingService writingService;    @PostMapping("/improve-writing")
+    private final WritingService writingService;
+    private final AiStreamEmitter aiStreamEmitter;
+
+    @PostMapping("/improve-writing")
     @Operation(
         summary = "Improve Writing", 
         description = "Enhance text quality and style using AI. Supports multiple writing styles including professional, academic, casual, and creative. Provides detailed feedback on improvements made."
@@ -123,7 +131,7 @@ public class WritingController {
             )
         )
     })
-    public ResponseEntity<WritingImprovementResponse> improveWriting(
+    public CompletableFuture<ResponseEntity<WritingImprovementResponse>> improveWriting(
         @io.swagger.v3.oas.annotations.parameters.RequestBody(
             description = "Writing improvement request with text and desired style",
             required = true,
@@ -165,7 +173,17 @@ public class WritingController {
         log.info("Received request to improve writing in {} style for text of length: {}", 
                 request.getStyle(), request.getText().length());
         
-        WritingImprovementResponse response = writingService.improveWriting(request);
-        return ResponseEntity.ok(response);
+        return writingService.improveWritingAsync(request)
+            .thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping(value = "/improve-writing/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Improve Writing (Streaming)",
+        description = "Stream the rewritten text as Server-Sent Events while it is generated. Each `token` event carries a chunk of text, followed by a `done` event with the complete writing improvement response, or an `error` event."
+    )
+    public SseEmitter improveWritingStream(@Valid @RequestBody WritingImprovementRequest request) {
+        log.info("Received request to stream {} style rewrite", request.getStyle());
+        return aiStreamEmitter.stream(onToken -> writingService.improveWritingStream(request, onToken));
     }
 }
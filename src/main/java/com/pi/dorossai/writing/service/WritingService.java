@@ -1,6 +1,9 @@
 package com.pi.dorossai.writing.service;
 
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiMetrics;
 import com.pi.dorossai.ai.service.AiService;
+import com.pi.dorossai.ai.service.AiServiceException;
 import com.pi.dorossai.ai.service.AiResponseCleaner;
 import com.pi.dorossai.writing.dto.WritingImprovementRequest;
 import com.pi.dorossai.writing.dto.WritingImprovementResponse;
@@ -8,13 +11,14 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -24,33 +28,51 @@ public class WritingService {
     private final AiService aiService;
     private final AiResponseCleaner responseCleaner;
     private final ObjectMapper objectMapper;
+    private final AiMetrics aiMetrics;
     
-    @Retryable(
-        value = { Exception.class },
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 1000)
-    )
-    public WritingImprovementResponse improveWriting(WritingImprovementRequest request) {
-        log.info("Improving writing in {} style for text of length: {}", request.getStyle(), request.getText().length());
+    /**
+     * The upstream call and its retries run on the AI executor. Endpoint
+     * failures are passed on as {@link AiServiceException}.
+     */
+    public CompletableFuture<WritingImprovementResponse> improveWritingAsync(WritingImprovementRequest request) {
+        log.info("Improving writing in {} style for text of length: {} (async)", request.getStyle(), request.getText().length());
         
-        try {
-            String prompt = buildPrompt(request);
-            
-            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            message.put("content", prompt);
-            
-            String response = aiService.callGithubInference(List.of(message), 0.5);
-            
-            // Parse JSON response
-            WritingImprovementResponse result = parseAiResponse(response, request);
-            
-            return result;
-            
-        } catch (Exception e) {
-            log.error("Writing improvement failed: {}", e.getMessage());
-            throw new RuntimeException("Failed to improve writing: " + e.getMessage(), e);
-        }
+        return aiService.callGithubInferenceAsync(AiFeature.WRITING, buildMessages(buildPrompt(request)), 0.5)
+            .thenApply(response -> parseAiResponse(response, request))
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("Writing improvement failed: {}", cause.getMessage());
+                if (cause instanceof AiServiceException aiFailure) {
+                    throw aiFailure;
+                }
+                throw new RuntimeException("Failed to improve writing: " + cause.getMessage(), cause);
+            });
+    }
+    
+    /**
+     * Streams the rewritten text, passing each token to {@code onToken} as the
+     * model produces it. The future completes with the assembled response.
+     */
+    public CompletableFuture<WritingImprovementResponse> improveWritingStream(WritingImprovementRequest request, Consumer<String> onToken) {
+        log.info("Streaming {} style rewrite for text of length: {}", request.getStyle(), request.getText().length());
+        
+        return aiService.streamGithubInferenceAsync(AiFeature.WRITING, buildMessages(buildStreamingPrompt(request)), 0.5, onToken)
+            .thenApply(text -> {
+                String improvedText = text.trim();
+                return new WritingImprovementResponse(
+                    improvedText,
+                    List.of("Applied " + request.getStyle() + " style improvements"),
+                    request.getText().length(),
+                    improvedText.length()
+                );
+            });
+    }
+    
+    private List<Map<String, String>> buildMessages(String prompt) {
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", prompt);
+        return List.of(message);
     }
     
     private String buildPrompt(WritingImprovementRequest request) {
@@ -75,7 +97,23 @@ public class WritingService {
             request.getStyle()
         );
     }
-      private WritingImprovementResponse parseAiResponse(String response, WritingImprovementRequest request) {        
+    private String buildStreamingPrompt(WritingImprovementRequest request) {
+        return String.format(
+            "Rewrite the following text in %s style:\n\n" +
+            "Original: %s\n\n" +
+            "Focus on:\n" +
+            "- Clarity and readability\n" +
+            "- Appropriate tone for %s style\n" +
+            "- Grammar and structure improvements\n" +
+            "- Maintaining the original meaning\n\n" +
+            "Respond with the rewritten text only, no JSON, no explanations, no markdown formatting.",
+            request.getStyle(),
+            request.getText(),
+            request.getStyle()
+        );
+    }
+    
+    private WritingImprovementResponse parseAiResponse(String response, WritingImprovementRequest request) {        
         try {
             // Clean the response using the centralized cleaner
             String cleanedResponse = responseCleaner.cleanJsonResponse(response);
@@ -99,6 +137,7 @@ public class WritingService {
             
         } catch (JsonProcessingException e) {
             log.warn("Failed to parse JSON response, creating fallback response: {}", e.getMessage());
+            aiMetrics.parseFailure(AiFeature.WRITING);
             
             // Fallback: treat the entire response as improved text
             return new WritingImprovementResponse(
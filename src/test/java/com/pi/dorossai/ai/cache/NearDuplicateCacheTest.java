@@ -0,0 +1,78 @@
+package com.pi.dorossai.ai.cache;
+
+import com.pi.dorossai.ai.config.AiCacheProperties;
+import com.pi.dorossai.ai.service.AiFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NearDuplicateCacheTest {
+
+    private static final String TEXT = "The water cycle describes how water evaporates from the surface of the earth, "
+            + "rises into the atmosphere, cools and condenses into clouds, and falls again to the surface as precipitation. "
+            + "Water falling on land collects in rivers and lakes, soil, and porous layers of rock, and much of it flows "
+            + "back into the oceans, where it will once more evaporate.";
+
+    private NearDuplicateCache cache;
+
+    @BeforeEach
+    void setUp() {
+        // Default summarization threshold 0.9: fingerprints at most 6 of 64 bits apart
+        cache = new NearDuplicateCache(new AiCacheProperties(), new SimpleMeterRegistry());
+        cache.put(AiFeature.SUMMARIZATION, "english", TEXT, "summary");
+    }
+
+    @Test
+    void servesNearDuplicateAtTheThreshold() {
+        String edited = TEXT.replace("lakes", "ponds");
+        assertEquals(6, distance(TEXT, edited));
+
+        assertEquals("summary", cache.get(AiFeature.SUMMARIZATION, "english", edited));
+        assertEquals("summary", cache.get(AiFeature.SUMMARIZATION, "english", TEXT.toUpperCase().replace(",", ";")));
+    }
+
+    @Test
+    void missesJustBelowTheThreshold() {
+        String edited = TEXT.replace("The water cycle", "The hydrologic cycle");
+        assertEquals(7, distance(TEXT, edited));
+
+        assertNull(cache.get(AiFeature.SUMMARIZATION, "english", edited));
+    }
+
+    @Test
+    void missesOtherVariantsAndFeatures() {
+        assertNull(cache.get(AiFeature.SUMMARIZATION, "french", TEXT));
+        assertNull(cache.get(AiFeature.KEY_POINTS, "english", TEXT));
+    }
+
+    @Test
+    void cachesOnlyAnswersTheCallerCanReuse() {
+        String other = TEXT.replace("The water cycle", "The rain cycle of our planet");
+
+        assertEquals("{\"summary\": \"cut", cache.getOrCall(AiFeature.SUMMARIZATION, "french", other,
+                () -> CompletableFuture.completedFuture("{\"summary\": \"cut"), content -> content.endsWith("}")).join());
+        assertNull(cache.get(AiFeature.SUMMARIZATION, "french", other));
+
+        cache.getOrCall(AiFeature.SUMMARIZATION, "french", other,
+                () -> CompletableFuture.completedFuture("{\"summary\": \"complete\"}"), content -> content.endsWith("}")).join();
+        assertEquals("{\"summary\": \"complete\"}", cache.get(AiFeature.SUMMARIZATION, "french", other));
+    }
+
+    @Test
+    void rejectsThresholdsLookupCannotReach() {
+        AiCacheProperties properties = new AiCacheProperties();
+        properties.getNearDuplicate().getThreshold().put(AiFeature.SUMMARIZATION, 0.85);
+
+        assertThrows(IllegalStateException.class, () -> new NearDuplicateCache(properties, new SimpleMeterRegistry()));
+    }
+
+    private static int distance(String a, String b) {
+        return SimHash.distance(SimHash.fingerprint(SimHash.words(a)), SimHash.fingerprint(SimHash.words(b)));
+    }
+}
@@ -0,0 +1,145 @@
+package com.pi.dorossai.ai.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedResponseLogTest {
+
+    private static final int SEGMENT_BYTES = 4096;
+    private static final long NEVER = Long.MAX_VALUE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void servesEntriesAfterReopen() throws Exception {
+        try (SegmentedResponseLog log = open(1 << 20)) {
+            log.put("summary|1", "first", NEVER);
+            log.put("summary|2", "second", NEVER);
+            log.put("summary|1", "first, updated", NEVER);
+        }
+
+        try (SegmentedResponseLog log = open(1 << 20)) {
+            assertEquals(2, log.size());
+            assertEquals("first, updated", log.get("summary|1", now()).getValue());
+            assertEquals("second", log.get("summary|2", now()).getValue());
+            assertNull(log.get("summary|3", now()));
+        }
+    }
+
+    @Test
+    void skipsExpiredEntries() throws Exception {
+        try (SegmentedResponseLog log = open(1 << 20)) {
+            log.put("expired", "value", now() - 1);
+            log.put("fresh", "value", NEVER);
+            assertNull(log.get("expired", now()));
+        }
+
+        try (SegmentedResponseLog log = open(1 << 20)) {
+            assertEquals(1, log.size());
+        }
+    }
+
+    @Test
+    void doesNotReviveOlderRecordsOfAnExpiredKey() throws Exception {
+        try (SegmentedResponseLog log = open(1 << 20)) {
+            log.put("summary|1", "stale", NEVER);
+            log.put("summary|1", "newest", now() - 1);
+        }
+
+        try (SegmentedResponseLog log = open(1 << 20)) {
+            assertNull(log.get("summary|1", now()));
+            assertEquals(0, log.size());
+        }
+    }
+
+    @Test
+    void ignoresRecordsFailingTheirChecksum() throws Exception {
+        try (SegmentedResponseLog log = open(1 << 20)) {
+            log.put("intact", "value", NEVER);
+            log.put("torn", "value", NEVER);
+        }
+        // Flip the last value byte of the second record
+        try (RandomAccessFile file = new RandomAccessFile(singleSegment().toFile(), "rw")) {
+            long end = (22 + "intact".length() + "value".length()) + (22 + "torn".length() + "value".length()) - 1;
+            file.seek(end);
+            int last = file.read();
+            file.seek(end);
+            file.write(last ^ 0xFF);
+        }
+
+        try (SegmentedResponseLog log = open(1 << 20)) {
+            assertEquals(1, log.getCorruptRecords());
+            assertEquals("value", log.get("intact", now()).getValue());
+            assertNull(log.get("torn", now()));
+
+            log.put("after", "value", NEVER);
+            assertEquals("value", log.get("after", now()).getValue());
+        }
+    }
+
+    @Test
+    void compactionRewritesLiveRecordsOfGarbageSegments() throws Exception {
+        String value = "x".repeat(500);
+        try (SegmentedResponseLog log = open(1 << 20)) {
+            log.put("kept", value, NEVER);
+            // Overwriting the same key fills segments with garbage
+            for (int i = 0; i < 30; i++) {
+                log.put("overwritten", value + i, NEVER);
+            }
+            long before = log.sizeInBytes();
+            assertTrue(log.needsCompaction());
+
+            log.compact(now());
+
+            assertTrue(log.sizeInBytes() < before);
+            assertFalse(log.needsCompaction());
+            assertEquals(value, log.get("kept", now()).getValue());
+            assertEquals(value + 29, log.get("overwritten", now()).getValue());
+        }
+
+        try (SegmentedResponseLog log = open(1 << 20)) {
+            assertEquals(2, log.size());
+            assertEquals(value, log.get("kept", now()).getValue());
+        }
+    }
+
+    @Test
+    void dropsOldestSegmentsBeyondMaxSize() throws Exception {
+        String value = "x".repeat(1000);
+        try (SegmentedResponseLog log = open(3 * SEGMENT_BYTES)) {
+            for (int i = 0; i < 20; i++) {
+                log.put("key" + i, value, NEVER);
+            }
+            log.compact(now());
+
+            assertTrue(log.sizeInBytes() <= 3 * SEGMENT_BYTES);
+            assertNull(log.get("key0", now()));
+            assertEquals(value, log.get("key19", now()).getValue());
+        }
+    }
+
+    private SegmentedResponseLog open(long maxBytes) throws Exception {
+        return new SegmentedResponseLog(directory, SEGMENT_BYTES, maxBytes, 16, 0.5);
+    }
+
+    private Path singleSegment() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.findFirst().orElseThrow();
+        }
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,110 @@
+package com.pi.dorossai.ai.provider;
+
+import com.pi.dorossai.ai.config.AiRoutingProperties;
+import com.pi.dorossai.ai.config.AiServiceConfig;
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AiProviderRouterTest {
+
+    private AiProviderRouter router;
+
+    @BeforeEach
+    void setUp() {
+        AiRoutingProperties properties = new AiRoutingProperties();
+        properties.setExplorationRatio(0);
+        properties.getProviders().put("primary", provider("http://localhost:1/primary"));
+        properties.getProviders().put("secondary", provider("http://localhost:1/secondary"));
+        router = new AiProviderRouter(properties, new AiServiceConfig(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void failsOverAndEjectsFailingProvider() {
+        List<String> tried = new ArrayList<>();
+        assertEquals("secondary", router.call(AiFeature.QUIZ, provider -> failingPrimary(provider, tried)));
+        assertEquals(List.of("primary", "secondary"), tried);
+
+        // A single failure does not eject a fresh provider
+        tried.clear();
+        router.call(AiFeature.QUIZ, provider -> failingPrimary(provider, tried));
+        assertEquals(List.of("primary", "secondary"), tried);
+
+        for (int i = 0; i < 3; i++) {
+            router.call(AiFeature.QUIZ, provider -> failingPrimary(provider, tried));
+        }
+        assertEquals("secondary", router.call(AiFeature.QUIZ, AiProvider::getName));
+    }
+
+    @Test
+    void prefersTheFasterProvider() {
+        for (int i = 0; i < 5; i++) {
+            router.call(AiFeature.QUIZ, provider -> {
+                sleep(provider.getName().equals("primary") ? 30 : 1);
+                return provider.getName();
+            });
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals("secondary", router.call(AiFeature.QUIZ, AiProvider::getName));
+        }
+    }
+
+    @Test
+    void comparesLatenciesWithinTheirFeature() {
+        // Primary is the faster one for moderation, secondary for mind maps
+        for (int i = 0; i < 4; i++) {
+            router.call(AiFeature.MODERATION, provider -> {
+                sleep(provider.getName().equals("primary") ? 1 : 20);
+                return provider.getName();
+            });
+            router.call(AiFeature.MIND_MAP, provider -> {
+                sleep(provider.getName().equals("primary") ? 60 : 30);
+                return provider.getName();
+            });
+        }
+
+        assertEquals("primary", router.call(AiFeature.MODERATION, AiProvider::getName));
+        assertEquals("secondary", router.call(AiFeature.MIND_MAP, AiProvider::getName));
+    }
+
+    @Test
+    void doesNotFailOverWhenTheEndpointAnswered() {
+        List<String> tried = new ArrayList<>();
+        assertThrows(IllegalStateException.class, () -> router.call(AiFeature.QUIZ, provider -> {
+            tried.add(provider.getName());
+            throw new IllegalStateException("unreadable completion");
+        }));
+        assertEquals(List.of("primary"), tried);
+    }
+
+    private static String failingPrimary(AiProvider provider, List<String> tried) {
+        tried.add(provider.getName());
+        if (provider.getName().equals("primary")) {
+            throw new AiServiceException("503", null);
+        }
+        return provider.getName();
+    }
+
+    private static AiRoutingProperties.Provider provider(String url) {
+        AiRoutingProperties.Provider provider = new AiRoutingProperties.Provider();
+        provider.setUrl(url);
+        provider.setApiKey("test");
+        return provider;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.pi.dorossai.ai.resilience;
+
+import com.pi.dorossai.ai.config.AiBulkheadProperties;
+import com.pi.dorossai.ai.service.AiBulkheadFullException;
+import com.pi.dorossai.ai.service.AiFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiBulkheadsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AiBulkheads bulkheads;
+    private ExecutorService callers;
+    private final List<CountDownLatch> held = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // Capacity 4: moderation reserves 2, mind maps reserve none but may borrow up to all 4
+        AiBulkheadProperties properties = new AiBulkheadProperties();
+        properties.setCapacity(4);
+        properties.getDefaultPartition().setReserved(0);
+        properties.getPartitions().put(AiFeature.MODERATION, partition(2, 2, Duration.ofSeconds(5)));
+        properties.getPartitions().put(AiFeature.MIND_MAP, partition(0, 4, Duration.ofSeconds(5)));
+        properties.getPartitions().put(AiFeature.QUIZ, partition(0, 1, Duration.ofMillis(50)));
+        meterRegistry = new SimpleMeterRegistry();
+        bulkheads = new AiBulkheads(properties, meterRegistry);
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        held.forEach(CountDownLatch::countDown);
+        callers.shutdownNow();
+    }
+
+    @Test
+    void lendsIdleReservationsAndCountsBorrowedSlots() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            hold(AiFeature.MIND_MAP);
+        }
+        awaitCondition(() -> inUse(AiFeature.MIND_MAP) == 3);
+        assertEquals(3, meterRegistry.get("dorossai.ai.bulkhead.borrowed").tag("feature", "mind-map").counter().count());
+
+        // Moderation still enters on its own reservation
+        assertEquals("ok", bulkheads.call(AiFeature.MODERATION, () -> "ok"));
+        assertEquals(0, inUse(AiFeature.MODERATION));
+    }
+
+    @Test
+    void givesReleasedSlotToTheOwnerItIsOwed() throws Exception {
+        List<CountDownLatch> mindMaps = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            mindMaps.add(hold(AiFeature.MIND_MAP));
+        }
+        awaitCondition(() -> inUse(AiFeature.MIND_MAP) == 4);
+
+        CountDownLatch moderation = hold(AiFeature.MODERATION);
+        awaitCondition(() -> queued(AiFeature.MODERATION) == 1);
+        CompletableFuture<String> mindMap = CompletableFuture.supplyAsync(
+                () -> bulkheads.call(AiFeature.MIND_MAP, () -> "mapped"), callers);
+        awaitCondition(() -> queued(AiFeature.MIND_MAP) == 1);
+
+        mindMaps.get(0).countDown();
+        awaitCondition(() -> inUse(AiFeature.MODERATION) == 1);
+        // The freed slot went to moderation's reservation, not the mind map queued after it
+        assertEquals(1, queued(AiFeature.MIND_MAP));
+        assertFalse(mindMap.isDone());
+
+        moderation.countDown();
+        assertEquals("mapped", mindMap.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsCallsBeyondMaxConcurrentAfterMaxWait() throws Exception {
+        hold(AiFeature.QUIZ);
+        awaitCondition(() -> inUse(AiFeature.QUIZ) == 1);
+
+        assertThrows(AiBulkheadFullException.class, () -> bulkheads.call(AiFeature.QUIZ, () -> "too many"));
+        assertEquals(1, meterRegistry.get("dorossai.ai.bulkhead.rejections")
+                .tag("feature", "quiz").tag("reason", "timeout").counter().count());
+        assertEquals(0, queued(AiFeature.QUIZ));
+    }
+
+    @Test
+    void rejectsPartitionsReservingMoreThanTheCapacity() {
+        AiBulkheadProperties properties = new AiBulkheadProperties();
+        properties.setCapacity(4);
+        properties.getDefaultPartition().setReserved(1);
+        assertThrows(IllegalStateException.class, () -> new AiBulkheads(properties, new SimpleMeterRegistry()));
+    }
+
+    /**
+     * Starts a call of {@code feature} that holds its slot until the returned
+     * latch opens.
+     */
+    private CountDownLatch hold(AiFeature feature) {
+        CountDownLatch release = new CountDownLatch(1);
+        held.add(release);
+        callers.execute(() -> bulkheads.call(feature, () -> {
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        return release;
+    }
+
+    private int inUse(AiFeature feature) {
+        return (int) meterRegistry.get("dorossai.ai.bulkhead.in-use").tag("feature", feature.getTag()).gauge().value();
+    }
+
+    private int queued(AiFeature feature) {
+        return (int) meterRegistry.get("dorossai.ai.bulkhead.queued").tag("feature", feature.getTag()).gauge().value();
+    }
+
+    private static AiBulkheadProperties.Partition partition(int reserved, int maxConcurrent, Duration maxWait) {
+        AiBulkheadProperties.Partition partition = new AiBulkheadProperties.Partition();
+        partition.setReserved(reserved);
+        partition.setMaxConcurrent(maxConcurrent);
+        partition.setMaxWait(maxWait);
+        return partition;
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < end, "condition not reached in time");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.pi.dorossai.ai.resilience;
+
+import com.pi.dorossai.ai.config.AiCircuitBreakerProperties;
+import com.pi.dorossai.ai.service.AiCircuitOpenException;
+import com.pi.dorossai.ai.service.AiServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AiCircuitBreakerTest {
+
+    private AiCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        AiCircuitBreakerProperties properties = new AiCircuitBreakerProperties();
+        properties.setWindowSize(10);
+        properties.setMinimumCalls(4);
+        properties.setOpenDuration(Duration.ofMillis(50));
+        properties.setHalfOpenProbes(2);
+        breaker = new AiCircuitBreaker(properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void opensOnFailureRateAndRejectsWithoutCalling() {
+        breaker.call(() -> "ok");
+        breaker.call(() -> "ok");
+        fail();
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.getState());
+        fail();
+        assertEquals(AiCircuitBreaker.State.OPEN, breaker.getState());
+
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(AiCircuitOpenException.class, () -> breaker.call(calls::incrementAndGet));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void ignoresFailuresThatAreNotUpstreamErrors() {
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IllegalStateException.class, () -> breaker.call(() -> {
+                throw new IllegalStateException("unreadable completion");
+            }));
+        }
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void closesAfterSuccessfulProbesAndReopensOnFailedProbe() throws Exception {
+        tripOpen();
+        Thread.sleep(60);
+        breaker.call(() -> "probe");
+        assertEquals(AiCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.call(() -> "probe");
+        assertEquals(AiCircuitBreaker.State.CLOSED, breaker.getState());
+
+        tripOpen();
+        Thread.sleep(60);
+        fail();
+        assertEquals(AiCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void tripOpen() {
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+        assertEquals(AiCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void fail() {
+        assertThrows(AiServiceException.class, () -> breaker.call(() -> {
+            throw new AiServiceException("upstream down", null);
+        }));
+    }
+}
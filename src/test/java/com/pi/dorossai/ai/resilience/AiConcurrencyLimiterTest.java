@@ -0,0 +1,229 @@
+package com.pi.dorossai.ai.resilience;
+
+import com.pi.dorossai.ai.config.AiConcurrencyLimitProperties;
+import com.pi.dorossai.ai.config.AiPriorityProperties;
+import com.pi.dorossai.ai.service.AiConcurrencyLimitException;
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiPriority;
+import com.pi.dorossai.ai.service.AiServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiConcurrencyLimiterTest {
+
+    private AiConcurrencyLimitProperties properties;
+    private AiPriorityProperties priorityProperties;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AiConcurrencyLimitProperties();
+        properties.setMinLimit(1);
+        properties.setBackoffRatio(0.5);
+        properties.setMaxWait(Duration.ofSeconds(5));
+        priorityProperties = new AiPriorityProperties();
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void raisesLimitWhileInUseAndHalvesItOnUpstreamFailure() {
+        properties.setInitialLimit(4);
+        properties.setMaxLimit(10);
+        AiConcurrencyLimiter limiter = limiter();
+
+        // Untimed, so that latency jitter is no congestion signal here.
+        // Calls one at a time leave the limit unused, so it does not grow
+        for (int i = 0; i < 10; i++) {
+            limiter.callIgnoringDuration(AiPriority.STANDARD, () -> "ok");
+        }
+        assertEquals(4, limiter.getLimit());
+
+        // Two calls in flight use half the limit
+        for (int i = 0; i < 10; i++) {
+            limiter.callIgnoringDuration(AiPriority.STANDARD,
+                    () -> limiter.callIgnoringDuration(AiPriority.STANDARD, () -> "ok"));
+        }
+        int raised = limiter.getLimit();
+        assertTrue(raised > 4 && raised <= 10);
+
+        fail(limiter);
+        assertEquals(raised / 2, limiter.getLimit(), 1);
+        for (int i = 0; i < 5; i++) {
+            fail(limiter);
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    void comparesLatenciesWithinTheirFeature() {
+        properties.setInitialLimit(4);
+        properties.setLatencyTolerance(3.0);
+        AiConcurrencyLimiter limiter = limiter();
+
+        // Quiz generations far slower than moderation calls are no congestion signal
+        for (int i = 0; i < 12; i++) {
+            limiter.call(AiFeature.MODERATION, AiPriority.STANDARD, () -> sleep(5));
+            limiter.call(AiFeature.QUIZ, AiPriority.STANDARD, () -> sleep(80));
+        }
+        assertEquals(4, limiter.getLimit());
+
+        // A moderation call as slow as a quiz is
+        limiter.call(AiFeature.MODERATION, AiPriority.STANDARD, () -> sleep(80));
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void ignoresFailuresThatAreNotUpstreamErrors() {
+        properties.setInitialLimit(4);
+        AiConcurrencyLimiter limiter = limiter();
+
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IllegalStateException.class, () -> limiter.call(AiFeature.QUIZ, AiPriority.STANDARD, () -> {
+                throw new IllegalStateException("unreadable completion");
+            }));
+        }
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void servesHigherPriorityWaitersFirst() throws Exception {
+        AiConcurrencyLimiter limiter = singleSlotLimiter();
+        CountDownLatch release = new CountDownLatch(1);
+        List<AiPriority> served = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<?> holder = hold(limiter, release);
+        List<CompletableFuture<?>> waiting = List.of(
+                enqueue(limiter, AiPriority.BULK, served, 1),
+                enqueue(limiter, AiPriority.STANDARD, served, 2),
+                enqueue(limiter, AiPriority.INTERACTIVE, served, 3));
+        release.countDown();
+
+        holder.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<?> waiter : waiting) {
+            waiter.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of(AiPriority.INTERACTIVE, AiPriority.STANDARD, AiPriority.BULK), served);
+    }
+
+    @Test
+    void agingLetsLongWaitingBulkCallsOvertake() throws Exception {
+        priorityProperties.setAgingInterval(Duration.ofMillis(50));
+        AiConcurrencyLimiter limiter = singleSlotLimiter();
+        CountDownLatch release = new CountDownLatch(1);
+        List<AiPriority> served = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<?> holder = hold(limiter, release);
+        CompletableFuture<?> bulk = enqueue(limiter, AiPriority.BULK, served, 1);
+        // Three aging intervals raise the bulk call above interactive
+        Thread.sleep(160);
+        CompletableFuture<?> interactive = enqueue(limiter, AiPriority.INTERACTIVE, served, 2);
+        release.countDown();
+
+        holder.get(5, TimeUnit.SECONDS);
+        bulk.get(5, TimeUnit.SECONDS);
+        interactive.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(AiPriority.BULK, AiPriority.INTERACTIVE), served);
+    }
+
+    @Test
+    void rejectsCallsBeyondTheQueue() throws Exception {
+        properties.setMaxQueue(1);
+        properties.setMaxWait(Duration.ofMillis(100));
+        AiConcurrencyLimiter limiter = singleSlotLimiter();
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<?> holder = hold(limiter, release);
+        CompletableFuture<?> queued = enqueue(limiter, AiPriority.STANDARD, new CopyOnWriteArrayList<>(), 1);
+        assertThrows(AiConcurrencyLimitException.class, () -> limiter.call(AiFeature.QUIZ, AiPriority.INTERACTIVE, () -> "rejected"));
+
+        // The queued call gives up after max-wait
+        Throwable timedOut = assertThrows(Exception.class, () -> queued.get(5, TimeUnit.SECONDS)).getCause();
+        assertInstanceOf(AiConcurrencyLimitException.class, timedOut);
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private AiConcurrencyLimiter limiter() {
+        return new AiConcurrencyLimiter(properties, priorityProperties, new SimpleMeterRegistry());
+    }
+
+    private AiConcurrencyLimiter singleSlotLimiter() {
+        properties.setInitialLimit(1);
+        properties.setMaxLimit(1);
+        return limiter();
+    }
+
+    /**
+     * Takes the only slot until {@code release} opens.
+     */
+    private CompletableFuture<?> hold(AiConcurrencyLimiter limiter, CountDownLatch release) throws InterruptedException {
+        CompletableFuture<?> holder = CompletableFuture.runAsync(() -> limiter.call(AiFeature.QUIZ, AiPriority.STANDARD, () -> {
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }), callers);
+        awaitCondition(() -> limiter.getInFlight() == 1);
+        return holder;
+    }
+
+    /**
+     * Starts a call that waits for a slot, and returns once it is the
+     * {@code position}-th in the queue.
+     */
+    private CompletableFuture<?> enqueue(AiConcurrencyLimiter limiter, AiPriority priority, List<AiPriority> served,
+                                         int position) throws InterruptedException {
+        CompletableFuture<?> waiter = CompletableFuture.runAsync(
+                () -> limiter.call(AiFeature.QUIZ, priority, () -> served.add(priority)), callers);
+        awaitCondition(() -> limiter.getQueued() == position);
+        return waiter;
+    }
+
+    private static void fail(AiConcurrencyLimiter limiter) {
+        assertThrows(AiServiceException.class, () -> limiter.call(AiFeature.QUIZ, AiPriority.STANDARD, () -> {
+            throw new AiServiceException("upstream down", null);
+        }));
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < end, "condition not reached in time");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.pi.dorossai.ai.resilience;
+
+import com.pi.dorossai.ai.config.AiRetryProperties;
+import com.pi.dorossai.ai.service.AiBulkheadFullException;
+import com.pi.dorossai.ai.service.AiCancellation;
+import com.pi.dorossai.ai.service.AiCircuitOpenException;
+import com.pi.dorossai.ai.service.AiConcurrencyLimitException;
+import com.pi.dorossai.ai.service.AiFeature;
+import com.pi.dorossai.ai.service.AiRequestContext;
+import com.pi.dorossai.ai.service.AiServiceException;
+import com.pi.dorossai.ai.service.AiTimeoutException;
+import com.pi.dorossai.ai.service.AiTokenBudgetExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AiRetryPolicyTest {
+
+    private AiRetryProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AiRetryProperties();
+        properties.setBaseDelay(Duration.ofMillis(1));
+        properties.setMaxDelay(Duration.ofMillis(5));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void retriesUpstreamFailuresUntilSuccess() {
+        AiRetryPolicy policy = policy();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertEquals("ok", policy.execute(AiFeature.QUIZ, () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new AiTimeoutException("timed out", null);
+            }
+            return "ok";
+        }));
+        assertEquals(3, attempts.get());
+        assertEquals(2, count("retried"));
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        AiRetryPolicy policy = policy();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(AiServiceException.class, () -> policy.execute(AiFeature.QUIZ, () -> fail(attempts)));
+        assertEquals(3, attempts.get());
+        assertEquals(1, count("attempts-exhausted"));
+    }
+
+    @Test
+    void doesNotRetryLocalRejectionsOrUnusableAnswers() {
+        AiRetryPolicy policy = policy();
+        List<RuntimeException> failures = List.of(
+                new AiCircuitOpenException("open"),
+                new AiConcurrencyLimitException("limit"),
+                new AiBulkheadFullException("full"),
+                new AiTokenBudgetExceededException(AiFeature.QUIZ, 9000, 8000),
+                new IllegalStateException("unreadable completion"));
+
+        for (RuntimeException failure : failures) {
+            AtomicInteger attempts = new AtomicInteger();
+            RuntimeException thrown = assertThrows(RuntimeException.class, () -> policy.execute(AiFeature.QUIZ, () -> {
+                attempts.incrementAndGet();
+                throw failure;
+            }));
+            assertEquals(failure, thrown);
+            assertEquals(1, attempts.get(), failure.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    void retriesOnlyWhileTheBudgetLasts() {
+        properties.setBudgetMaxTokens(2);
+        properties.setBudgetRatio(0.5);
+        AiRetryPolicy policy = policy();
+
+        // Both saved-up retries go to the first call
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(AiServiceException.class, () -> policy.execute(AiFeature.QUIZ, () -> fail(attempts)));
+        assertEquals(3, attempts.get());
+        assertEquals(0, policy.getBudget());
+
+        attempts.set(0);
+        assertThrows(AiServiceException.class, () -> policy.execute(AiFeature.QUIZ, () -> fail(attempts)));
+        assertEquals(1, attempts.get());
+        assertEquals(1, count("budget-exhausted"));
+
+        // Two successes earn one retry
+        policy.execute(AiFeature.QUIZ, () -> "ok");
+        policy.execute(AiFeature.QUIZ, () -> "ok");
+        attempts.set(0);
+        assertThrows(AiServiceException.class, () -> policy.execute(AiFeature.QUIZ, () -> fail(attempts)));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void doesNotRetryPastTheDeadlineOrForAGoneClient() {
+        properties.setBaseDelay(Duration.ofMillis(200));
+        properties.setMaxDelay(Duration.ofMillis(500));
+        AiRetryPolicy policy = policy();
+
+        AtomicInteger attempts = new AtomicInteger();
+        AiRequestContext.EMPTY.withTimeout(Duration.ofMillis(100)).call(() ->
+                assertThrows(AiServiceException.class, () -> policy.execute(AiFeature.QUIZ, () -> fail(attempts))));
+        assertEquals(1, attempts.get());
+
+        AiCancellation cancellation = new AiCancellation();
+        cancellation.cancel();
+        attempts.set(0);
+        AiRequestContext.EMPTY.withCancellation(cancellation).call(() ->
+                assertThrows(AiServiceException.class, () -> policy.execute(AiFeature.QUIZ, () -> fail(attempts))));
+        assertEquals(1, attempts.get());
+        assertEquals(2, count("deadline"));
+    }
+
+    private AiRetryPolicy policy() {
+        return new AiRetryPolicy(properties, meterRegistry);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("dorossai.ai.retry.attempts").tag("feature", "quiz").tag("result", result)
+                .counter().count();
+    }
+
+    private static String fail(AtomicInteger attempts) {
+        attempts.incrementAndGet();
+        throw new AiServiceException("503", null);
+    }
+}
@@ -0,0 +1,181 @@
+package com.pi.dorossai.ai.service;
+
+import com.pi.dorossai.ai.config.AiHedgingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiHedgingTest {
+
+    private AiHedgingProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AiHedgingProperties();
+        properties.setEnabled(true);
+        properties.setMinSamples(3);
+        properties.setMinDelay(Duration.ofMillis(20));
+        properties.setBudgetRatio(1);
+        meterRegistry = new SimpleMeterRegistry();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void doesNotHedgeWithoutLatencyHistory() {
+        AiHedging hedging = hedging();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertEquals("slow", hedging.call(AiFeature.QUIZ, () -> {
+            attempts.incrementAndGet();
+            sleep(60);
+            return "slow";
+        }));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void hedgesSlowCallAndCancelsTheLoser() throws Exception {
+        AiHedging hedging = warmedUp();
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch primaryCancelled = new CountDownLatch(1);
+
+        String answer = hedging.call(AiFeature.QUIZ, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                // Stands in for an HTTP request that only ends when aborted
+                AiCallHandle.current().attach(() -> {
+                    primaryCancelled.countDown();
+                    return true;
+                });
+                await(primaryCancelled);
+                throw new CancellationException("aborted");
+            }
+            return "hedge";
+        });
+
+        assertEquals("hedge", answer);
+        assertEquals(0, primaryCancelled.getCount());
+        assertEquals(1, count("dorossai.ai.hedging.hedges", "result", "launched"));
+        // The win is counted just after the answer is handed back
+        awaitCondition(() -> meterRegistry.find("dorossai.ai.hedging.wins")
+                .tag("feature", "quiz").tag("winner", "hedge").counter() != null);
+        assertEquals(1, count("dorossai.ai.hedging.wins", "winner", "hedge"));
+    }
+
+    @Test
+    void answersWithTheHedgeWhenThePrimaryFails() {
+        AiHedging hedging = warmedUp();
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch hedgeStarted = new CountDownLatch(1);
+
+        assertEquals("hedge", hedging.call(AiFeature.QUIZ, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                await(hedgeStarted);
+                throw new AiServiceException("upstream down", null);
+            }
+            hedgeStarted.countDown();
+            sleep(50);
+            return "hedge";
+        }));
+    }
+
+    @Test
+    void failsWithTheFirstFailureWhenEveryAttemptFailed() {
+        AiHedging hedging = warmedUp();
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch hedgeStarted = new CountDownLatch(1);
+        CountDownLatch primaryFailed = new CountDownLatch(1);
+
+        AiServiceException failure = assertThrows(AiServiceException.class, () -> hedging.call(AiFeature.QUIZ, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                await(hedgeStarted);
+                primaryFailed.countDown();
+                throw new AiServiceException("attempt 1", null);
+            }
+            hedgeStarted.countDown();
+            await(primaryFailed);
+            sleep(50);
+            throw new AiServiceException("attempt 2", null);
+        }));
+        assertEquals("attempt 1", failure.getMessage());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void sendsNoHedgeOnceTheBudgetIsSpent() {
+        properties.setBudgetRatio(0);
+        AiHedging hedging = warmedUp();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertEquals("slow", hedging.call(AiFeature.QUIZ, () -> {
+            attempts.incrementAndGet();
+            sleep(60);
+            return "slow";
+        }));
+        assertEquals(1, attempts.get());
+        assertEquals(1, count("dorossai.ai.hedging.hedges", "result", "budget-exhausted"));
+    }
+
+    private AiHedging hedging() {
+        return new AiHedging(properties, executor, meterRegistry);
+    }
+
+    /**
+     * A hedging instance whose quiz calls are hedged after the 20ms minimum delay.
+     */
+    private AiHedging warmedUp() {
+        AiHedging hedging = hedging();
+        for (int i = 0; i < properties.getMinSamples(); i++) {
+            hedging.call(AiFeature.QUIZ, () -> "fast");
+        }
+        return hedging;
+    }
+
+    private double count(String name, String tag, String value) {
+        return meterRegistry.get(name).tag("feature", "quiz").tag(tag, value).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < end, "condition not reached in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
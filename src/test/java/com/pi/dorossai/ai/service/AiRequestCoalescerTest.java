@@ -0,0 +1,89 @@
+package com.pi.dorossai.ai.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiRequestCoalescerTest {
+
+    private static final PromptKey KEY = PromptKey.of("gpt-4o-mini", 0.1,
+            List.of(Map.of("role", "user", "content", "Is this text safe?")));
+
+    private final AiRequestCoalescer coalescer = new AiRequestCoalescer(new SimpleMeterRegistry(), true);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicReference<AiRequestContext> flightContext = new AtomicReference<>();
+    private final CompletableFuture<String> upstream = new CompletableFuture<>();
+    private boolean upstreamAbortable = true;
+
+    @Test
+    void keepsTheFlightRunningWhenTheFirstCallerCancels() throws Exception {
+        AiCancellation firstClient = new AiCancellation();
+        CompletableFuture<String> first = coalesce(AiRequestContext.EMPTY.withCancellation(firstClient)
+                .withTimeout(Duration.ofSeconds(30)));
+        CompletableFuture<String> joined = coalesce(AiRequestContext.EMPTY.withCancellation(new AiCancellation()));
+
+        // The flight carries neither the leader's client cancellation nor its deadline
+        assertNull(flightContext.get().getDeadline());
+        firstClient.cancel();
+
+        assertTrue(first.isCancelled());
+        assertFalse(upstream.isDone());
+        upstream.complete("safe");
+        assertEquals("safe", joined.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void abortsTheFlightOnceEveryCallerHasGivenUp() {
+        AiCancellation firstClient = new AiCancellation();
+        CompletableFuture<String> first = coalesce(AiRequestContext.EMPTY.withCancellation(firstClient));
+        CompletableFuture<String> joined = coalesce(AiRequestContext.EMPTY);
+
+        firstClient.cancel();
+        assertFalse(flightContext.get().isCancelled());
+        // Stands in for the joined caller's deadline passing
+        joined.orTimeout(1, TimeUnit.MILLISECONDS);
+        assertThrows(Exception.class, joined::join);
+
+        assertTrue(flightContext.get().isCancelled());
+        assertThrows(CancellationException.class, first::join);
+    }
+
+    @Test
+    void startsANewFlightInsteadOfJoiningAnAbandonedOne() {
+        // An upstream call still winding down after the abort
+        upstreamAbortable = false;
+        AiCancellation firstClient = new AiCancellation();
+        coalesce(AiRequestContext.EMPTY.withCancellation(firstClient));
+        firstClient.cancel();
+
+        coalesce(AiRequestContext.EMPTY);
+        assertEquals(2, calls.get());
+    }
+
+    private CompletableFuture<String> coalesce(AiRequestContext caller) {
+        return caller.call(() -> coalescer.coalesce(KEY, () -> {
+            calls.incrementAndGet();
+            AiRequestContext context = AiRequestContext.current();
+            flightContext.set(context);
+            // Stands in for an upstream request attached to the flight's cancellation
+            context.getCancellation().attach(() -> upstreamAbortable && upstream.completeExceptionally(
+                    new CancellationException("AI service request cancelled")));
+            return upstream;
+        }));
+    }
+}
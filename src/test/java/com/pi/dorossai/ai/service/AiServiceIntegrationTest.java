@@ -0,0 +1,234 @@
+package com.pi.dorossai.ai.service;
+
+import com.pi.dorossai.ai.support.FakeInferenceServer;
+import com.pi.dorossai.ai.support.FakeInferenceServer.RecordedRequest;
+import com.pi.dorossai.ai.support.FeatureResponses;
+import com.pi.dorossai.code.dto.CodeExplanationRequest;
+import com.pi.dorossai.code.dto.CodeExplanationResponse;
+import com.pi.dorossai.code.service.CodeService;
+import com.pi.dorossai.document.dto.DocumentQARequest;
+import com.pi.dorossai.document.dto.DocumentQAResponse;
+import com.pi.dorossai.document.service.DocumentService;
+import com.pi.dorossai.flashcard.FlashcardRequest;
+import com.pi.dorossai.flashcard.FlashcardResponse;
+import com.pi.dorossai.flashcard.FlashcardService;
+import com.pi.dorossai.quiz.QuizGenerationRequest;
+import com.pi.dorossai.quiz.QuizResponse;
+import com.pi.dorossai.quiz.QuizService;
+import com.pi.dorossai.summarization.SummarizationRequest;
+import com.pi.dorossai.summarization.SummarizationResponse;
+import com.pi.dorossai.summarization.SummarizationService;
+import com.pi.dorossai.writing.dto.WritingImprovementRequest;
+import com.pi.dorossai.writing.dto.WritingImprovementResponse;
+import com.pi.dorossai.writing.service.WritingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Feature services against {@link FakeInferenceServer}, through the async
+ * paths the controllers use, the whole {@link AiService} pipeline and the
+ * real HTTP transport. Every test runs once per {@code dorossai.ai.transport}.
+ */
+@SpringBootTest
+class AiServiceIntegrationTest {
+
+    private static final FakeInferenceServer FAKE = startFake();
+
+    @DynamicPropertySource
+    static void pointAtFake(DynamicPropertyRegistry registry) {
+        registry.add("dorossai.ai.routing.providers.github.url", FAKE::getUrl);
+        registry.add("dorossai.ai.retry.base-delay", () -> "10ms");
+        registry.add("dorossai.ai.deadline.features.flashcards", () -> "500ms");
+        registry.add("dorossai.ai.deadline.features.writing", () -> "500ms");
+    }
+
+    @AfterAll
+    static void stopFake() {
+        FAKE.close();
+    }
+
+    @Nested
+    @TestPropertySource(properties = "dorossai.ai.transport=http1")
+    class Http1Transport extends Transport {
+    }
+
+    /**
+     * The fake only speaks HTTP/1.1, which the JDK client falls back to, so
+     * this covers the client's body reads, timeouts and cancellation but not
+     * multiplexing.
+     */
+    @Nested
+    @TestPropertySource(properties = "dorossai.ai.transport=http2")
+    class Http2Transport extends Transport {
+
+        @Autowired
+        private MeterRegistry meterRegistry;
+
+        @Test
+        void reportsTheNegotiatedProtocol() throws Exception {
+            quizService.generateQuizAsync(new QuizGenerationRequest("plate tectonics", 3, "medium", "english"))
+                    .get(10, TimeUnit.SECONDS);
+
+            assertTrue(meterRegistry.get("dorossai.ai.http2.responses").tag("version", "HTTP_1_1").counter().count() > 0);
+            assertTrue(meterRegistry.find("dorossai.ai.http2.responses").tag("version", "HTTP_2").counters().isEmpty());
+        }
+    }
+
+    abstract class Transport {
+
+        @Autowired
+        QuizService quizService;
+
+        @Autowired
+        private SummarizationService summarizationService;
+
+        @Autowired
+        private FlashcardService flashcardService;
+
+        @Autowired
+        private WritingService writingService;
+
+        @Autowired
+        private DocumentService documentService;
+
+        @Autowired
+        private CodeService codeService;
+
+        @BeforeEach
+        void resetFake() {
+            FAKE.reset();
+        }
+
+        @Test
+        void parsesTheFeatureAnswer() throws Exception {
+            QuizResponse quiz = quizService.generateQuizAsync(new QuizGenerationRequest("plate tectonics", 3, "medium", "english"))
+                    .get(10, TimeUnit.SECONDS);
+
+            assertEquals(3, quiz.getQuiz().size());
+            assertEquals("A", quiz.getQuiz().get(0).getCorrectAnswer());
+            RecordedRequest request = FAKE.getRequests(FeatureResponses.QUIZ).get(0);
+            assertEquals(700, request.getMaxTokens());
+            assertTrue(request.header("Authorization").get(0).startsWith("Bearer "));
+        }
+
+        @Test
+        void retriesServerErrors() throws Exception {
+            FAKE.route(FeatureResponses.SUMMARIZATION).failNext(1, 503);
+
+            SummarizationResponse summary = summarizationService.summarizeTextAsync(
+                    new SummarizationRequest("The water cycle moves water between oceans, air and land.", "english"))
+                    .get(10, TimeUnit.SECONDS);
+
+            assertEquals("A short summary of the text.", summary.getSummary());
+            assertEquals(2, FAKE.getRequests(FeatureResponses.SUMMARIZATION).size());
+        }
+
+        @Test
+        void streamsTheAnswerInChunks() throws Exception {
+            FAKE.route(FeatureResponses.SUMMARIZATION).streaming(Duration.ofMillis(5), 2);
+            List<String> tokens = new CopyOnWriteArrayList<>();
+
+            SummarizationResponse summary = summarizationService.summarizeTextStream(
+                    new SummarizationRequest("Photosynthesis turns light into chemical energy.", "english"), tokens::add)
+                    .get(10, TimeUnit.SECONDS);
+
+            assertEquals("A short summary of the text, streamed sentence by sentence.", summary.getSummary());
+            assertTrue(tokens.size() > 1);
+            assertTrue(FAKE.getRequests(FeatureResponses.SUMMARIZATION).get(0).isStream());
+        }
+
+        @Test
+        void answersTimeoutsWithTheFallback() throws Exception {
+            FAKE.route(FeatureResponses.FLASHCARDS).timingOut(1, Duration.ofSeconds(5));
+
+            FlashcardResponse deck = flashcardService.generateFlashcardsAsync(new FlashcardRequest("volcanoes", 3))
+                    .get(10, TimeUnit.SECONDS);
+
+            assertEquals(1, deck.getNumCards());
+            assertEquals("Service Timeout", deck.getFlashcards().get(0).getQuestion());
+        }
+
+        @Test
+        void endsStalledStreamsAtTheFeatureDeadline() throws Exception {
+            // The next event is due long after the 500ms deadline
+            FAKE.route(FeatureResponses.WRITING).streaming(Duration.ofSeconds(5), 1);
+            long start = System.nanoTime();
+
+            CompletableFuture<WritingImprovementResponse> rewrite = writingService.improveWritingStream(
+                    new WritingImprovementRequest("Their going too the park.", "formal"), token -> { });
+
+            assertInstanceOf(AiTimeoutException.class, failureOf(rewrite));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+        }
+
+        @Test
+        void abortsCancelledStreams() throws Exception {
+            FAKE.route(FeatureResponses.CODE_EXPLANATION).streaming(Duration.ofSeconds(1), 1);
+            AiCancellation cancellation = new AiCancellation();
+            CountDownLatch firstToken = new CountDownLatch(1);
+
+            CompletableFuture<CodeExplanationResponse> explanation = AiRequestContext.EMPTY.withCancellation(cancellation)
+                    .call(() -> codeService.explainCodeStream(new CodeExplanationRequest("def f(x):\n    return x",
+                            "python", "beginner"), token -> firstToken.countDown()));
+            assertTrue(firstToken.await(10, TimeUnit.SECONDS));
+            long start = System.nanoTime();
+            cancellation.cancel();
+
+            assertInstanceOf(CancellationException.class, failureOf(explanation));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(800));
+        }
+
+        @Test
+        void cachesOnlyCompleteAnswers() throws Exception {
+            DocumentQARequest request = new DocumentQARequest("What is the boiling point?", "Water boils at 100 degrees.");
+            FAKE.route(FeatureResponses.DOCUMENT_QA).truncating(1);
+            documentService.askDocumentAsync(request).get(10, TimeUnit.SECONDS);
+            int truncatedCalls = FAKE.getRequests(FeatureResponses.DOCUMENT_QA).size();
+
+            FAKE.route(FeatureResponses.DOCUMENT_QA).truncating(0);
+            DocumentQAResponse answer = documentService.askDocumentAsync(request).get(10, TimeUnit.SECONDS);
+            int completeCalls = FAKE.getRequests(FeatureResponses.DOCUMENT_QA).size();
+            DocumentQAResponse cached = documentService.askDocumentAsync(request).get(10, TimeUnit.SECONDS);
+
+            assertTrue(completeCalls > truncatedCalls);
+            assertEquals(completeCalls, FAKE.getRequests(FeatureResponses.DOCUMENT_QA).size());
+            assertEquals(answer, cached);
+        }
+    }
+
+    private static Throwable failureOf(CompletableFuture<?> future) throws Exception {
+        Throwable failure = future.handle((result, error) -> error).get(10, TimeUnit.SECONDS);
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    private static FakeInferenceServer startFake() {
+        try {
+            return FakeInferenceServer.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
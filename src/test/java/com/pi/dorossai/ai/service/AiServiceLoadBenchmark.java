@@ -0,0 +1,143 @@
+package com.pi.dorossai.ai.service;
+
+import com.pi.dorossai.DorossaiApplication;
+import com.pi.dorossai.ai.support.FakeInferenceServer;
+import com.pi.dorossai.ai.support.FeatureResponses;
+import com.pi.dorossai.quiz.QuizGenerationRequest;
+import com.pi.dorossai.quiz.QuizService;
+import com.pi.dorossai.summarization.SummarizationRequest;
+import com.pi.dorossai.summarization.SummarizationService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load on the summarization and quiz services, with
+ * {@link AiService} pointed at a {@link FakeInferenceServer} that answers
+ * after a log-normal delay and fails a share of requests with 429 or 503.
+ * Prints throughput, the latency percentiles seen by the callers, and how
+ * many upstream requests the calls took.
+ *
+ * <p>Not a unit test; run it after {@code mvn test-compile} with
+ * {@code java -cp target/test-classes:target/classes:<dependencies> com.pi.dorossai.ai.service.AiServiceLoadBenchmark
+ * [callers] [seconds] [failure rate]}. Extra {@code --name=value} arguments
+ * are passed to Spring, e.g. {@code --dorossai.ai.transport=http2}.
+ */
+public class AiServiceLoadBenchmark {
+
+    private static final Duration MEDIAN_LATENCY = Duration.ofMillis(400);
+    private static final double LATENCY_SIGMA = 0.5;
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>();
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            (arg.startsWith("--") ? options : positional).add(arg);
+        }
+        int callers = positional.size() > 0 ? Integer.parseInt(positional.get(0)) : 32;
+        Duration duration = Duration.ofSeconds(positional.size() > 1 ? Long.parseLong(positional.get(1)) : 30);
+        double failureRate = positional.size() > 2 ? Double.parseDouble(positional.get(2)) : 0.02;
+
+        try (FakeInferenceServer fake = FakeInferenceServer.start()) {
+            for (String route : List.of(FeatureResponses.SUMMARIZATION, FeatureResponses.QUIZ)) {
+                fake.route(route)
+                        .latency(FakeInferenceServer.Latency.logNormal(MEDIAN_LATENCY, LATENCY_SIGMA))
+                        .failing(429, failureRate / 2)
+                        .failing(503, failureRate / 2);
+            }
+            options.add("--dorossai.ai.routing.providers.github.url=" + fake.getUrl());
+            options.add("--dorossai.ai.cache.enabled=false");
+
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DorossaiApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run(options.toArray(String[]::new))) {
+                SummarizationService summarization = context.getBean(SummarizationService.class);
+                QuizService quiz = context.getBean(QuizService.class);
+
+                run(summarization, quiz, callers, WARMUP);
+                fake.clearRequests();
+                Result result = run(summarization, quiz, callers, duration);
+
+                System.out.printf("callers=%d duration=%ds failure-rate=%.3f upstream-median=%dms%n",
+                        callers, duration.toSeconds(), failureRate, MEDIAN_LATENCY.toMillis());
+                System.out.printf("calls=%d errors=%d throughput=%.1f/s upstream-requests=%d (%.2f per call)%n",
+                        result.latencies.size(), result.errors.get(), result.latencies.size() / (double) duration.toSeconds(),
+                        fake.getRequests().size(), fake.getRequests().size() / (double) Math.max(1, result.latencies.size()));
+                System.out.printf("latency p50=%dms p90=%dms p99=%dms max=%dms%n",
+                        result.percentile(0.5), result.percentile(0.9), result.percentile(0.99), result.percentile(1));
+                result.errorTypes.forEach((type, count) -> System.out.printf("  %s: %d%n", type, count.get()));
+            }
+        }
+    }
+
+    private static Result run(SummarizationService summarization, QuizService quiz, int callers, Duration duration)
+            throws InterruptedException {
+        Result result = new Result();
+        long end = System.nanoTime() + duration.toNanos();
+        AtomicLong sequence = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(callers);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        for (int i = 0; i < callers; i++) {
+            executor.execute(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        // Distinct prompts, so that no call is coalesced with another
+                        long n = sequence.incrementAndGet();
+                        long start = System.nanoTime();
+                        try {
+                            call(summarization, quiz, n).join();
+                            result.latencies.add((System.nanoTime() - start) / 1_000_000);
+                        } catch (RuntimeException e) {
+                            result.errors.incrementAndGet();
+                            Throwable cause = e.getCause() != null ? e.getCause() : e;
+                            result.errorTypes.computeIfAbsent(cause.getClass().getSimpleName(), type -> new AtomicInteger())
+                                    .incrementAndGet();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        executor.shutdown();
+        return result;
+    }
+
+    private static CompletableFuture<?> call(SummarizationService summarization, QuizService quiz, long n) {
+        if (n % 4 == 0) {
+            return quiz.generateQuizAsync(new QuizGenerationRequest("topic " + n, 5, "medium", "english"));
+        }
+        return summarization.summarizeTextAsync(new SummarizationRequest(
+                "Call " + n + ": the water cycle moves water between oceans, air and land. ".repeat(20), "english"));
+    }
+
+    private static class Result {
+
+        final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger errors = new AtomicInteger();
+        final ConcurrentHashMap<String, AtomicInteger> errorTypes = new ConcurrentHashMap<>();
+
+        long percentile(double percentile) {
+            List<Long> sorted = new ArrayList<>(latencies);
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            Collections.sort(sorted);
+            return sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(percentile * sorted.size()) - 1));
+        }
+    }
+}
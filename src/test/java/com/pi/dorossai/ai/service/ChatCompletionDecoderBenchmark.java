@@ -0,0 +1,78 @@
+package com.pi.dorossai.ai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bytes allocated and time spent per decode of a realistic chat-completion
+ * body, {@link ChatCompletionDecoder} against reading the body as a raw
+ * {@code Map}. Allocation is measured with the HotSpot
+ * {@link com.sun.management.ThreadMXBean}.
+ *
+ * <p>Not a unit test; run it after {@code mvn test-compile} with
+ * {@code java -cp target/test-classes:target/classes:<dependencies> com.pi.dorossai.ai.service.ChatCompletionDecoderBenchmark}.
+ */
+public class ChatCompletionDecoderBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 20_000;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ChatCompletionDecoder DECODER = new ChatCompletionDecoder(OBJECT_MAPPER);
+
+    private static int sink;
+
+    public static void main(String[] args) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        Measurement typed = measure(threads, () -> DECODER.decode(ChatCompletionDecoderTest.RESPONSE).getContent());
+        Measurement map = measure(threads, ChatCompletionDecoderBenchmark::decodeAsMap);
+
+        System.out.printf("%-14s %10s %10s%n", "decoder", "B/call", "ns/call");
+        System.out.printf("%-14s %10d %10d%n", "typed stream", typed.bytes, typed.nanos);
+        System.out.printf("%-14s %10d %10d%n", "Map.class", map.bytes, map.nanos);
+        System.out.printf("typed stream allocates %.0f%% less (sink %d)%n",
+                100.0 * (map.bytes - typed.bytes) / map.bytes, sink);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String decodeAsMap() throws Exception {
+        Map<String, Object> body = OBJECT_MAPPER.readValue(ChatCompletionDecoderTest.RESPONSE, Map.class);
+        List<Map<String, Object>> choices = (List<Map<String, Object>>) body.get("choices");
+        Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
+        return (String) message.get("content");
+    }
+
+    private static Measurement measure(com.sun.management.ThreadMXBean threads, Decode decode) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += decode.run().length();
+        }
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += decode.run().length();
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        return new Measurement(bytes / MEASURED_ITERATIONS, nanos / MEASURED_ITERATIONS);
+    }
+
+    private static class Measurement {
+
+        final long bytes;
+        final long nanos;
+
+        Measurement(long bytes, long nanos) {
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Decode {
+        String run() throws Exception;
+    }
+}
@@ -0,0 +1,80 @@
+package com.pi.dorossai.ai.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pi.dorossai.ai.dto.ChatCompletionResult;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatCompletionDecoderTest {
+
+    static final String RESPONSE = """
+            {
+              "choices": [
+                {
+                  "content_filter_results": {
+                    "hate": {"filtered": false, "severity": "safe"},
+                    "self_harm": {"filtered": false, "severity": "safe"},
+                    "sexual": {"filtered": false, "severity": "safe"},
+                    "violence": {"filtered": false, "severity": "safe"}
+                  },
+                  "finish_reason": "stop",
+                  "index": 0,
+                  "logprobs": null,
+                  "message": {
+                    "content": "{\\"summary\\": \\"Spring Boot simplifies building stand-alone, production-grade Spring applications.\\", \\"originalLength\\": 212, \\"summaryLength\\": 84}",
+                    "refusal": null,
+                    "role": "assistant"
+                  }
+                }
+              ],
+              "created": 1749637800,
+              "id": "chatcmpl-BgX2pQ7rYc2w1nV4K9sD3mLzF0aHe",
+              "model": "gpt-4o-2024-11-20",
+              "object": "chat.completion",
+              "prompt_filter_results": [
+                {
+                  "prompt_index": 0,
+                  "content_filter_results": {
+                    "hate": {"filtered": false, "severity": "safe"},
+                    "jailbreak": {"filtered": false, "detected": false},
+                    "self_harm": {"filtered": false, "severity": "safe"},
+                    "sexual": {"filtered": false, "severity": "safe"},
+                    "violence": {"filtered": false, "severity": "safe"}
+                  }
+                }
+              ],
+              "system_fingerprint": "fp_ee1d74bde0",
+              "usage": {
+                "completion_tokens": 38,
+                "completion_tokens_details": {"accepted_prediction_tokens": 0, "audio_tokens": 0, "reasoning_tokens": 0, "rejected_prediction_tokens": 0},
+                "prompt_tokens": 142,
+                "prompt_tokens_details": {"audio_tokens": 0, "cached_tokens": 0},
+                "total_tokens": 180
+              }
+            }
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ChatCompletionDecoder decoder = new ChatCompletionDecoder(objectMapper);
+
+    @Test
+    void decodesContentFinishReasonAndUsage() throws Exception {
+        ChatCompletionResult result = decoder.decode(RESPONSE);
+
+        assertTrue(result.getContent().startsWith("{\"summary\": \"Spring Boot simplifies"));
+        assertEquals("stop", result.getFinishReason());
+        assertEquals(142, result.getPromptTokens());
+        assertEquals(38, result.getCompletionTokens());
+        assertEquals(180, result.getTotalTokens());
+    }
+
+    @Test
+    void rejectsResponseWithoutChoices() {
+        assertThrows(JsonProcessingException.class,
+                () -> decoder.decode("{\"error\": {\"message\": \"rate limited\"}}"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.pi.dorossai.ai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonArrayItemStreamerTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String COMPLETION = "```json\n{\"topic\": \"rivers\", \"tags\": [\"a\", \"b\"], \"questions\": ["
+            + "{\"question\": \"Which river is the longest?\", \"options\": [\"Nile\", \"Amazon\"], \"correctAnswer\": \"Nile\"},"
+            + "{\"question\": \"Is a \\\"delta\\\" {a mouth}?\", \"options\": [\"Yes\", \"No\"], \"correctAnswer\": \"Yes\"},"
+            + "{\"question\": \"Où coule le Rhône ?\", \"meta\": {\"nested\": [1, {\"deep\": true}]}}"
+            + "], \"numQuestions\": 3}\n```";
+
+    private final List<JsonNode> items = new ArrayList<>();
+    private final JsonArrayItemStreamer streamer = new JsonArrayItemStreamer(OBJECT_MAPPER, "questions", items::add);
+
+    @Test
+    void emitsEachItemFromChunksSplitMidObjectAndMidString() throws Exception {
+        // Three characters at a time splits field names, string values and escapes
+        for (int i = 0; i < COMPLETION.length(); i += 3) {
+            streamer.feed(COMPLETION.substring(i, Math.min(COMPLETION.length(), i + 3)));
+        }
+
+        JsonNode expected = OBJECT_MAPPER.readTree(COMPLETION.substring(8, COMPLETION.length() - 4)).get("questions");
+        assertEquals(3, items.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(expected.get(i), items.get(i));
+        }
+        assertEquals("Is a \"delta\" {a mouth}?", items.get(1).get("question").asText());
+    }
+
+    @Test
+    void emitsAnItemAsSoonAsItIsClosed() {
+        int secondItem = COMPLETION.indexOf("{\"question\": \"Is a");
+        int splitInString = COMPLETION.indexOf("delta");
+
+        streamer.feed(COMPLETION.substring(0, secondItem - 2));
+        assertEquals(0, items.size());
+        streamer.feed(COMPLETION.substring(secondItem - 2, splitInString));
+        assertEquals(1, items.size());
+        streamer.feed(COMPLETION.substring(splitInString));
+        assertEquals(3, items.size());
+    }
+
+    @Test
+    void stopsEmittingOnMalformedInput() {
+        streamer.feed("{\"questions\": [{\"question\": \"one\"}, ");
+        streamer.feed("{\"question\": \"two\"]]");
+        streamer.feed(", {\"question\": \"three\"}]}");
+
+        assertEquals(1, items.size());
+        assertEquals(1, streamer.getEmitted());
+    }
+}
@@ -0,0 +1,471 @@
+package com.pi.dorossai.ai.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Value;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process stand-in for an OpenAI-compatible chat completions endpoint,
+ * for integration tests and load benchmarks. Point {@code AiService} at
+ * {@link #getUrl()}, e.g. with
+ * {@code dorossai.ai.routing.providers.github.url}.
+ *
+ * <p>Requests are answered by the most recently added {@link Route} whose
+ * predicate matches the prompt. {@link FeatureResponses} installs routes
+ * answering every feature's prompt in its expected shape. Each route can add
+ * latency, fail with an HTTP status, never answer, or cut its JSON short.
+ * {@code stream=true} requests are answered with server-sent events, and
+ * {@code max_tokens} truncates the answer like the real endpoint does.
+ * Every request is recorded.
+ */
+public class FakeInferenceServer implements AutoCloseable {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<Route> routes = new CopyOnWriteArrayList<>();
+    private final List<RecordedRequest> requests = new CopyOnWriteArrayList<>();
+
+    private FakeInferenceServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a server on a free loopback port, answering every feature with
+     * {@link FeatureResponses}.
+     */
+    public static FakeInferenceServer start() throws IOException {
+        FakeInferenceServer fake = startEmpty();
+        FeatureResponses.install(fake);
+        return fake;
+    }
+
+    /**
+     * Starts a server without routes; unmatched prompts get a 404.
+     */
+    public static FakeInferenceServer startEmpty() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-inference-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        FakeInferenceServer fake = new FakeInferenceServer(server, executor);
+        server.createContext("/", fake::handle);
+        server.setExecutor(executor);
+        server.start();
+        return fake;
+    }
+
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/chat/completions";
+    }
+
+    /**
+     * Adds a route answering prompts that match {@code prompt}. It takes
+     * precedence over the routes added before it.
+     */
+    public Route route(String name, Predicate<String> prompt) {
+        Route route = new Route(name, prompt);
+        routes.add(0, route);
+        return route;
+    }
+
+    /**
+     * Adds a route answering prompts that contain {@code text}.
+     */
+    public Route routeContaining(String name, String text) {
+        return route(name, prompt -> prompt.contains(text));
+    }
+
+    /**
+     * The newest route called {@code name}, e.g. one of the
+     * {@link FeatureResponses} routes, to script its faults or latency.
+     */
+    public Route route(String name) {
+        return routes.stream()
+                .filter(route -> route.name.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No route " + name));
+    }
+
+    public List<RecordedRequest> getRequests() {
+        return List.copyOf(requests);
+    }
+
+    public List<RecordedRequest> getRequests(String route) {
+        return requests.stream().filter(request -> route.equals(request.getRoute())).toList();
+    }
+
+    public void clearRequests() {
+        requests.clear();
+    }
+
+    /**
+     * Drops the recorded requests and every route, and installs the
+     * {@link FeatureResponses} routes again, undoing what tests scripted.
+     */
+    public void reset() {
+        requests.clear();
+        routes.clear();
+        FeatureResponses.install(this);
+    }
+
+    /**
+     * Waits until {@code count} requests were recorded, for calls whose
+     * completion the caller does not observe.
+     */
+    public boolean awaitRequests(int count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (requests.size() < count) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        // Interrupts requests held open by timeouts
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = readBody(exchange);
+            JsonNode payload = OBJECT_MAPPER.readTree(body);
+            String prompt = prompt(payload);
+            Route route = routes.stream().filter(candidate -> candidate.prompt.test(prompt)).findFirst().orElse(null);
+            RecordedRequest request = new RecordedRequest(
+                    route != null ? route.name : null,
+                    payload.path("model").asText(null),
+                    prompt,
+                    payload.path("stream").asBoolean(false),
+                    payload.hasNonNull("max_tokens") ? payload.get("max_tokens").asInt() : null,
+                    Map.copyOf(exchange.getRequestHeaders()),
+                    body.length,
+                    System.nanoTime());
+            requests.add(request);
+
+            if (route == null) {
+                sendError(exchange, 404, "No route for prompt");
+                return;
+            }
+            route.serve(exchange, request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        byte[] raw = exchange.getRequestBody().readAllBytes();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(raw))) {
+                return gzip.readAllBytes();
+            }
+        }
+        return raw;
+    }
+
+    /**
+     * @return the content of all messages, one per line
+     */
+    private static String prompt(JsonNode payload) {
+        StringBuilder prompt = new StringBuilder();
+        for (JsonNode message : payload.path("messages")) {
+            prompt.append(message.path("content").asText()).append('\n');
+        }
+        return prompt.toString();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        ObjectNode error = OBJECT_MAPPER.createObjectNode();
+        error.putObject("error").put("message", message).put("code", String.valueOf(status));
+        send(exchange, status, "application/json", OBJECT_MAPPER.writeValueAsBytes(error));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static int tokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * How a group of prompts is answered. All settings may be changed while
+     * the server is running.
+     */
+    public static class Route {
+
+        private final String name;
+        private final Predicate<String> prompt;
+        private volatile Function<RecordedRequest, String> content = request -> "";
+        private volatile Latency latency = Latency.NONE;
+        private volatile Duration tokenInterval = Duration.ZERO;
+        private volatile int tokensPerChunk = 4;
+        private final Map<Integer, Double> failureRates = new ConcurrentHashMap<>();
+        private final AtomicInteger scriptedFailures = new AtomicInteger();
+        private volatile int scriptedStatus;
+        private volatile double timeoutRate;
+        private volatile Duration hangFor = Duration.ofMinutes(5);
+        private volatile double truncationRate;
+
+        private Route(String name, Predicate<String> prompt) {
+            this.name = name;
+            this.prompt = prompt;
+        }
+
+        public Route respond(String content) {
+            return respond(request -> content);
+        }
+
+        /**
+         * Answers with content computed from the request, e.g. to match the
+         * number of items the prompt asks for.
+         */
+        public Route respond(Function<RecordedRequest, String> content) {
+            this.content = content;
+            return this;
+        }
+
+        /**
+         * Delay before the response headers, or before the first event of a stream.
+         */
+        public Route latency(Latency latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Pace of streamed answers: {@code tokensPerChunk} tokens are sent
+         * every {@code interval}.
+         */
+        public Route streaming(Duration interval, int tokensPerChunk) {
+            this.tokenInterval = interval;
+            this.tokensPerChunk = tokensPerChunk;
+            return this;
+        }
+
+        /**
+         * Fails the given share of requests with {@code status}, e.g. 429 or 503.
+         */
+        public Route failing(int status, double rate) {
+            failureRates.put(status, rate);
+            return this;
+        }
+
+        /**
+         * Fails the next {@code count} requests with {@code status}, before any
+         * random failure.
+         */
+        public Route failNext(int count, int status) {
+            this.scriptedStatus = status;
+            this.scriptedFailures.set(count);
+            return this;
+        }
+
+        /**
+         * Leaves the given share of requests unanswered for {@code hangFor},
+         * so that the client times out.
+         */
+        public Route timingOut(double rate, Duration hangFor) {
+            this.timeoutRate = rate;
+            this.hangFor = hangFor;
+            return this;
+        }
+
+        /**
+         * Cuts the answer of the given share of requests in half, as if
+         * generation stopped, leaving JSON answers unparseable.
+         */
+        public Route truncating(double rate) {
+            this.truncationRate = rate;
+            return this;
+        }
+
+        private void serve(HttpExchange exchange, RecordedRequest request) throws IOException, InterruptedException {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Thread.sleep(latency.sampleMillis(random));
+
+            if (scriptedFailures.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                sendError(exchange, scriptedStatus, "Scripted failure");
+                return;
+            }
+            for (Map.Entry<Integer, Double> failure : failureRates.entrySet()) {
+                if (random.nextDouble() < failure.getValue()) {
+                    sendError(exchange, failure.getKey(), "Injected failure");
+                    return;
+                }
+            }
+            if (random.nextDouble() < timeoutRate) {
+                Thread.sleep(hangFor.toMillis());
+                return;
+            }
+
+            String answer = content.apply(request);
+            String finishReason = "stop";
+            if (random.nextDouble() < truncationRate) {
+                answer = answer.substring(0, answer.length() / 2);
+                finishReason = "length";
+            }
+            Integer maxTokens = request.getMaxTokens();
+            if (maxTokens != null && tokens(answer) > maxTokens) {
+                answer = answer.substring(0, maxTokens * CHARS_PER_TOKEN);
+                finishReason = "length";
+            }
+
+            if (request.isStream()) {
+                stream(exchange, answer, finishReason);
+            } else {
+                send(exchange, 200, "application/json",
+                        OBJECT_MAPPER.writeValueAsBytes(completion(request, answer, finishReason)));
+            }
+        }
+
+        private static ObjectNode completion(RecordedRequest request, String answer, String finishReason) {
+            ObjectNode completion = OBJECT_MAPPER.createObjectNode();
+            completion.put("id", "chatcmpl-fake");
+            completion.put("object", "chat.completion");
+            completion.put("model", request.getModel());
+            ObjectNode choice = completion.putArray("choices").addObject();
+            choice.put("index", 0);
+            choice.putObject("message").put("role", "assistant").put("content", answer);
+            choice.put("finish_reason", finishReason);
+            ObjectNode usage = completion.putObject("usage");
+            usage.put("prompt_tokens", tokens(request.getPrompt()));
+            usage.put("completion_tokens", tokens(answer));
+            usage.put("total_tokens", tokens(request.getPrompt()) + tokens(answer));
+            return completion;
+        }
+
+        private void stream(HttpExchange exchange, String answer, String finishReason)
+                throws IOException, InterruptedException {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            int chunkChars = Math.max(1, tokensPerChunk * CHARS_PER_TOKEN);
+            for (int start = 0; start < answer.length(); start += chunkChars) {
+                if (start > 0 && !tokenInterval.isZero()) {
+                    Thread.sleep(tokenInterval.toMillis());
+                }
+                String chunk = answer.substring(start, Math.min(answer.length(), start + chunkChars));
+                writeEvent(out, delta(chunk, null));
+            }
+            writeEvent(out, delta(null, finishReason));
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        private static String delta(String content, String finishReason) throws IOException {
+            ObjectNode event = OBJECT_MAPPER.createObjectNode();
+            event.put("object", "chat.completion.chunk");
+            ArrayNode choices = event.putArray("choices");
+            ObjectNode choice = choices.addObject();
+            choice.put("index", 0);
+            ObjectNode delta = choice.putObject("delta");
+            if (content != null) {
+                delta.put("content", content);
+            }
+            choice.put("finish_reason", finishReason);
+            return OBJECT_MAPPER.writeValueAsString(event);
+        }
+
+        private static void writeEvent(OutputStream out, String data) throws IOException {
+            out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    /**
+     * Distribution of the server's think time.
+     */
+    @FunctionalInterface
+    public interface Latency {
+
+        Latency NONE = random -> 0;
+
+        long sampleMillis(Random random);
+
+        static Latency fixed(Duration delay) {
+            return random -> delay.toMillis();
+        }
+
+        static Latency uniform(Duration min, Duration max) {
+            return random -> min.toMillis() + (long) (random.nextDouble() * (max.toMillis() - min.toMillis()));
+        }
+
+        /**
+         * Long-tailed latency typical of model inference: half the requests
+         * take less than {@code median}, and the tail grows with {@code sigma}
+         * (0.5 puts the 99th percentile at about 3.2 times the median).
+         */
+        static Latency logNormal(Duration median, double sigma) {
+            return random -> Math.round(median.toMillis() * Math.exp(sigma * random.nextGaussian()));
+        }
+    }
+
+    @Value
+    public static class RecordedRequest {
+        /**
+         * Name of the route that answered, or {@code null} if none matched.
+         */
+        String route;
+        String model;
+        String prompt;
+        boolean stream;
+        Integer maxTokens;
+        Map<String, List<String>> headers;
+        /**
+         * Decompressed size of the request body.
+         */
+        int bodySize;
+        long receivedAt;
+
+        public List<String> header(String name) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+            return List.of();
+        }
+    }
+}
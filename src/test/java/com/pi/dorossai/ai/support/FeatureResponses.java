@@ -0,0 +1,122 @@
+package com.pi.dorossai.ai.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Canned answers in the shape every feature's prompt asks for, keyed by
+ * route names equal to {@code AiFeature} tags. Answers asking for a number
+ * of items get that many.
+ */
+public final class FeatureResponses {
+
+    public static final String SUMMARIZATION = "summarization";
+    public static final String QUIZ = "quiz";
+    public static final String FLASHCARDS = "flashcards";
+    public static final String KEY_POINTS = "key-points";
+    public static final String MIND_MAP = "mind-map";
+    public static final String MODERATION = "moderation";
+    public static final String MODERATION_BATCH = "moderation-batch";
+    public static final String CODE_EXPLANATION = "code-explanation";
+    public static final String WRITING = "writing";
+    public static final String DOCUMENT_QA = "document-qa";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Pattern QUESTIONS = Pattern.compile("quiz with (\\d+) questions");
+    private static final Pattern CARDS = Pattern.compile("Generate (\\d+) educational flashcards");
+    private static final Pattern POINTS = Pattern.compile("Extract exactly (\\d+) key points");
+    private static final Pattern BATCH_IDS = Pattern.compile("\"id\":(\\d+)");
+
+    private FeatureResponses() {
+    }
+
+    static void install(FakeInferenceServer server) {
+        server.routeContaining(SUMMARIZATION, "Summarize the following text").respond(request ->
+                request.getPrompt().contains("Required JSON format")
+                        ? json(OBJECT_MAPPER.createObjectNode()
+                                .put("summary", "A short summary of the text.")
+                                .put("originalLength", request.getPrompt().length())
+                                .put("summaryLength", 28))
+                        : "A short summary of the text, streamed sentence by sentence.");
+        server.routeContaining(QUIZ, "quiz with").respond(request -> {
+            int count = count(QUESTIONS, request.getPrompt());
+            ObjectNode quiz = OBJECT_MAPPER.createObjectNode();
+            ArrayNode questions = quiz.putArray("questions");
+            for (int i = 1; i <= count; i++) {
+                ObjectNode question = questions.addObject();
+                question.put("question", "Question " + i + "?");
+                question.putArray("options").add("A").add("B").add("C").add("D");
+                question.put("correctAnswer", "A");
+                question.put("explanation", "A is correct.");
+            }
+            return json(quiz.put("topic", "Topic").put("difficulty", "medium").put("numQuestions", count));
+        });
+        server.routeContaining(FLASHCARDS, "educational flashcards").respond(request -> {
+            int count = count(CARDS, request.getPrompt());
+            ObjectNode deck = OBJECT_MAPPER.createObjectNode();
+            ArrayNode cards = deck.putArray("flashcards");
+            for (int i = 1; i <= count; i++) {
+                cards.addObject().put("question", "Question " + i + "?").put("answer", "Answer " + i + ".");
+            }
+            return json(deck.put("topic", "Topic").put("numCards", count));
+        });
+        server.routeContaining(KEY_POINTS, "key points from the following text").respond(request -> {
+            ObjectNode keyPoints = OBJECT_MAPPER.createObjectNode();
+            ArrayNode points = keyPoints.putArray("keyPoints");
+            for (int i = 1; i <= count(POINTS, request.getPrompt()); i++) {
+                points.add("Key point " + i + ".");
+            }
+            return json(keyPoints.put("originalLength", request.getPrompt().length()));
+        });
+        server.routeContaining(MIND_MAP, "mind map in Mermaid format")
+                .respond("graph TD;\n  Topic[Topic] --> First[First];\n  Topic --> Second[Second];\n  First --> Detail[Detail];");
+        server.routeContaining(MODERATION, "Analyze the following text for potentially harmful").respond(json(
+                verdict(OBJECT_MAPPER.createObjectNode()).put("level", "standard")));
+        server.routeContaining(MODERATION_BATCH, "Analyze each of the following").respond(request -> {
+            Set<String> ids = new LinkedHashSet<>();
+            Matcher matcher = BATCH_IDS.matcher(request.getPrompt());
+            while (matcher.find()) {
+                ids.add(matcher.group(1));
+            }
+            ObjectNode batch = OBJECT_MAPPER.createObjectNode();
+            ArrayNode results = batch.putArray("results");
+            ids.forEach(id -> verdict(results.addObject()).put("id", Integer.parseInt(id)));
+            return json(batch);
+        });
+        server.routeContaining(CODE_EXPLANATION, "Explain this")
+                .respond("This code defines a function that returns its input.\n\n1. Purpose: ...\n2. Structure: ...");
+        server.routeContaining(WRITING, "Rewrite the following text").respond(request ->
+                request.getPrompt().contains("Required JSON format")
+                        ? json(OBJECT_MAPPER.createObjectNode()
+                                .put("improved_text", "An improved version of the text.")
+                                .<ObjectNode>set("changes", OBJECT_MAPPER.createArrayNode().add("Clearer wording"))
+                                .put("original_length", request.getPrompt().length())
+                                .put("improved_length", 32))
+                        : "An improved version of the text.");
+        server.routeContaining(DOCUMENT_QA, "Answer the following question based strictly").respond(json(
+                OBJECT_MAPPER.createObjectNode().put("answer", "The answer from the context.").put("confidence", "high")));
+    }
+
+    private static ObjectNode verdict(ObjectNode verdict) {
+        verdict.put("flagged", false);
+        verdict.putArray("categories");
+        verdict.put("confidence", 0.95);
+        verdict.put("reason", "");
+        return verdict;
+    }
+
+    private static int count(Pattern pattern, String prompt) {
+        Matcher matcher = pattern.matcher(prompt);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 1;
+    }
+
+    private static String json(ObjectNode node) {
+        return node.toString();
+    }
+}
@@ -0,0 +1,120 @@
+package com.pi.dorossai.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bytes-on-wire versus CPU time of gzipping chat-completion request bodies,
+ * per payload size and deflate level. For each case it prints the
+ * compressed size, the median time to compress and to decompress, and the
+ * time saved or lost in total on links of a few bandwidths.
+ *
+ * <p>Not a unit test; run it after {@code mvn test-compile} with
+ * {@code java -cp target/test-classes:target/classes:<dependencies> com.pi.dorossai.config.GzipCompressionBenchmark}.
+ */
+public class GzipCompressionBenchmark {
+
+    private static final int[] PAYLOAD_KB = {1, 4, 16, 64, 128, 256};
+    private static final int[] LEVELS = {Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION};
+    private static final long[] LINK_MBPS = {10, 100, 1000};
+    private static final int ITERATIONS = 200;
+
+    public static void main(String[] args) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        System.out.printf("%8s %5s %10s %6s %10s %10s", "payload", "level", "gzipped", "ratio", "gzip(us)", "gunzip(us)");
+        for (long mbps : LINK_MBPS) {
+            System.out.printf(" %13s", "net@" + mbps + "Mbps");
+        }
+        System.out.println();
+
+        for (int kb : PAYLOAD_KB) {
+            byte[] body = objectMapper.writeValueAsBytes(Map.of(
+                    "model", "gpt-4o-mini",
+                    "temperature", 0.1,
+                    "messages", List.of(Map.of("role", "user", "content", prose(kb * 1024)))));
+            for (int level : LEVELS) {
+                byte[] compressed = gzip(body, level);
+                long gzipNanos = median(() -> gzip(body, level));
+                long gunzipNanos = median(() -> gunzip(compressed));
+                System.out.printf("%6dKB %5d %10d %5.1fx %10d %10d",
+                        body.length / 1024, level, compressed.length, (double) body.length / compressed.length,
+                        gzipNanos / 1000, gunzipNanos / 1000);
+                for (long mbps : LINK_MBPS) {
+                    // Positive: microseconds saved per call once the CPU cost is paid
+                    long savedMicros = (body.length - compressed.length) * 8L / mbps;
+                    System.out.printf(" %+11dus", savedMicros - (gzipNanos + gunzipNanos) / 1000);
+                }
+                System.out.println();
+            }
+        }
+    }
+
+    private static byte[] gzip(byte[] body, int level) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return gzip.readAllBytes();
+        }
+    }
+
+    /**
+     * Word salad over an English-like vocabulary; compresses about as well
+     * as the documents users paste in.
+     */
+    private static String prose(int length) {
+        Random random = new Random(42);
+        String[] words = new String[2000];
+        for (int i = 0; i < words.length; i++) {
+            char[] word = new char[3 + random.nextInt(8)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = "etaoinshrdlucmfwypvbgkjqxz".charAt((int) Math.min(25, Math.abs(random.nextGaussian()) * 8));
+            }
+            words[i] = new String(word);
+        }
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            // Zipf-like: frequent words are much more common than rare ones
+            text.append(words[(int) Math.min(words.length - 1, Math.exp(random.nextDouble() * Math.log(words.length)) - 1)]);
+            text.append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        return text.substring(0, length);
+    }
+
+    private static long median(IoCall call) throws IOException {
+        for (int i = 0; i < ITERATIONS / 4; i++) {
+            call.run();
+        }
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            call.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[ITERATIONS / 2];
+    }
+
+    private interface IoCall {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,199 @@
+package com.pi.dorossai.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GzipCompressionInterceptorTest {
+
+    private final GzipCompressionInterceptor interceptor = new GzipCompressionInterceptor(true, 100, Deflater.BEST_SPEED);
+
+    @Test
+    void compressesRequestBodiesFromTheMinimumSize() throws IOException {
+        byte[] large = "{\"messages\": \"a long prompt\"}".repeat(10).getBytes(StandardCharsets.UTF_8);
+        AtomicReference<byte[]> sent = new AtomicReference<>();
+        MockClientHttpRequest request = request();
+
+        interceptor.intercept(request, large, (req, payload) -> {
+            sent.set(payload);
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        });
+
+        assertEquals("gzip", request.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("gzip", request.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+        assertTrue(sent.get().length < large.length);
+        assertArrayEquals(large, new GZIPInputStream(new ByteArrayInputStream(sent.get())).readAllBytes());
+    }
+
+    @Test
+    void sendsSmallRequestBodiesAsTheyAre() throws IOException {
+        byte[] small = new byte[99];
+        AtomicReference<byte[]> sent = new AtomicReference<>();
+        MockClientHttpRequest request = request();
+
+        interceptor.intercept(request, small, (req, payload) -> {
+            sent.set(payload);
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        });
+
+        assertNull(request.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("gzip", request.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+        assertArrayEquals(small, sent.get());
+    }
+
+    @Test
+    void passesOnStreamedEventsBeforeTheBodyEnds() throws Exception {
+        ArrivingStream wire = new ArrivingStream();
+        GZIPOutputStream upstream = new GZIPOutputStream(wire.sender(), true);
+        ClientHttpResponse response = gzipResponse(wire);
+
+        upstream.write("data: first\n\n".getBytes(StandardCharsets.UTF_8));
+        upstream.flush();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+        // The rest of the body has not arrived yet, so the reader must not ask for more than is available
+        assertEquals("data: first", CompletableFuture.supplyAsync(() -> readLine(reader)).get(5, TimeUnit.SECONDS));
+
+        upstream.write("data: second\n\n".getBytes(StandardCharsets.UTF_8));
+        upstream.close();
+        assertEquals("", reader.readLine());
+        assertEquals("data: second", reader.readLine());
+        assertEquals("", reader.readLine());
+        assertNull(reader.readLine());
+        assertFalse(response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING));
+        assertFalse(response.getHeaders().containsKey(HttpHeaders.CONTENT_LENGTH));
+    }
+
+    @Test
+    void readsEmptyBodiesLabelledGzipAsEmpty() throws IOException {
+        ClientHttpResponse response = gzipResponse(new ByteArrayInputStream(new byte[0]));
+
+        assertEquals(-1, response.getBody().read());
+        assertFalse(response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void gunzipsCompleteBodies() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write("{\"choices\": []}".getBytes(StandardCharsets.UTF_8));
+        }
+
+        ClientHttpResponse response = gzipResponse(new ByteArrayInputStream(compressed.toByteArray()));
+
+        assertEquals("{\"choices\": []}", new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    private ClientHttpResponse gzipResponse(InputStream body) throws IOException {
+        MockClientHttpResponse upstream = new MockClientHttpResponse(body, HttpStatus.OK);
+        upstream.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return interceptor.intercept(request(), new byte[0], (req, payload) -> upstream);
+    }
+
+    private static MockClientHttpRequest request() {
+        return new MockClientHttpRequest(HttpMethod.POST, URI.create("http://localhost/chat/completions"));
+    }
+
+    private static String readLine(BufferedReader reader) {
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A response body that receives bytes as the upstream flushes them and,
+     * like a socket, only reports what has already arrived as available.
+     */
+    private static class ArrivingStream extends InputStream {
+
+        private static final byte[] END = new byte[0];
+
+        private final BlockingQueue<byte[]> arrivals = new LinkedBlockingQueue<>();
+        private ByteArrayInputStream current = new ByteArrayInputStream(new byte[0]);
+        private boolean ended;
+
+        OutputStream sender() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    arrivals.add(new byte[]{(byte) b});
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    arrivals.add(Arrays.copyOfRange(b, off, off + len));
+                }
+
+                @Override
+                public void close() {
+                    arrivals.add(END);
+                }
+            };
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (current.available() == 0) {
+                if (ended) {
+                    return -1;
+                }
+                try {
+                    byte[] next = arrivals.take();
+                    ended = next == END;
+                    current = new ByteArrayInputStream(next);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            return current.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            int arrived = current.available();
+            for (byte[] chunk : arrivals) {
+                arrived += chunk.length;
+            }
+            return arrived;
+        }
+    }
+}